@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    private int workersPerSite = 8;
+    private int parseThreads = 2;
+    private int lemmatizeThreads = 4;
+    private int persistThreads = 2;
+    private int stageQueueCapacity = 64;
+    private long politenessDelayMillis = 150;
+    private int politenessBurst = 1;
+    private int maxDepth = 0;
+    private int expectedUrlsPerSite = 100000;
+    private double visitedFalsePositiveRate = 0.01;
+    private boolean incremental = false;
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "index-writer-settings")
+public class IndexWriterSettings {
+    private int threads = 2;
+    private int queueCapacity = 1000;
+    private int batchSize = 500;
+    private long flushIntervalMillis = 1000;
+    private int flushRetries = 3;
+    private long retryBackoffMillis = 50;
+    private long reconcileIntervalMillis = 5000;
+    private int purgeBatchSize = 10000;
+    private long statisticsReconcileIntervalMillis = 60000;
+}
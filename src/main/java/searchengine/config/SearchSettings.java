@@ -0,0 +1,27 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private double commonLemmaThreshold = 0.6;
+    private int proximityWindow = 8;
+    private double proximityBoost = 1.0;
+    private String scorer = "bm25";
+    private double bm25K1 = 1.2;
+    private double bm25B = 0.75;
+    private int resultCacheSize = 1000;
+    private int resultCacheTtlSeconds = 300;
+    private int resultCacheDepth = 100;
+    private int maxLimit = 100;
+    private int maxResultDepth = 1000;
+    private int siteThreads = 4;
+    private int siteQueueCapacity = 64;
+    private long siteTimeoutMillis = 2000;
+}
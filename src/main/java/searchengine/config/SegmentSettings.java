@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "segment-settings")
+public class SegmentSettings {
+    private boolean enabled = false;
+    private String directory = "index-segments";
+    private int mergeThreshold = 4;
+    private boolean verifyOnOpen = true;
+}
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Getter
@@ -13,4 +14,10 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    private List<String> excludedExtensions = new ArrayList<>(List.of("pdf", "png", "jpg", "jpeg", "gif", "svg",
+            "webp", "ico", "bmp", "zip", "rar", "7z", "gz", "tar", "sql", "doc", "docx", "xls", "xlsx", "ppt", "pptx",
+            "mp3", "mp4", "avi", "mov", "exe", "apk", "css", "js", "xml", "json"));
+    private List<String> excludedPathPrefixes = new ArrayList<>();
+    private List<String> trackingParameters = new ArrayList<>(List.of("utm_*", "gclid", "yclid", "fbclid",
+            "_openstat", "sessionid", "jsessionid", "phpsessid"));
 }
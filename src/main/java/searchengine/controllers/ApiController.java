@@ -4,17 +4,20 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
+import searchengine.config.SearchSettings;
 import searchengine.dto.statistics.ResponseWithError;
 import searchengine.dto.statistics.QueryResponse;
 import searchengine.dto.statistics.ResponseWithoutError;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexPageService;
+import searchengine.services.MetricsService;
 import searchengine.services.SearchService;
 import searchengine.services.StartIndexingService;
 import searchengine.services.StatisticsService;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
@@ -26,6 +29,8 @@ public class ApiController {
     private final StartIndexingService service;
     private final IndexPageService indexPageService;
     private final SearchService searchService;
+    private final MetricsService metricsService;
+    private final SearchSettings searchSettings;
     public static AtomicBoolean checkStartFlag=new AtomicBoolean(false);
 
 
@@ -33,6 +38,10 @@ public class ApiController {
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(metricsService.getMetrics());
+    }
     @GetMapping("/startIndexing")
     public ResponseEntity startIndexing() {
         if (!checkStartFlag.get()) {
@@ -45,7 +54,7 @@ public class ApiController {
     @GetMapping("/stopIndexing")
     public ResponseEntity stopIndexing(){
         if (checkStartFlag.get()){
-            checkStartFlag.set(false);
+            service.stopIndexing();
             return ResponseEntity.ok(new ResponseWithError(true,"")) ;
         }
         return ResponseEntity.status(400).body(new ResponseWithError(false,"Индексация не запущена")) ;
@@ -67,8 +76,11 @@ public class ApiController {
                                  @RequestParam(required = false,defaultValue = "10") int limit) throws IOException {
         if (query.equals("")){
             return ResponseEntity.status(400).body(new ResponseWithError(false,"Задан пустой поисковый запрос"));
-        } else
-            return ResponseEntity.ok(searchService.search(query,site,offset,limit));
+        }
+        // глубина выдачи ограничена max-result-depth, размер страницы - max-limit: на них выделяются массивы TopKCollector
+        offset = Math.max(0, Math.min(offset, searchSettings.getMaxResultDepth()));
+        limit = Math.max(1, Math.min(limit, searchSettings.getMaxLimit()));
+        return ResponseEntity.ok(searchService.search(query,site,offset,limit));
     }
 
 }
@@ -0,0 +1,12 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PageLength {
+    private int siteId;
+    private int pageId;
+    private int wordCount;
+}
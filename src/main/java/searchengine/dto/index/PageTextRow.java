@@ -0,0 +1,13 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PageTextRow {
+    private int pageId;
+    private int textLength;
+    private byte[] textData;
+    private byte[] tokenOffsets;
+}
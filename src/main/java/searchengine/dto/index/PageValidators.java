@@ -0,0 +1,14 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PageValidators {
+    private int id;
+    private String path;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+}
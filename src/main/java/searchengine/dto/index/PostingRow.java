@@ -0,0 +1,13 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PostingRow {
+    private String lemma;
+    private int pageId;
+    private float rank;
+    private byte[] positions;
+}
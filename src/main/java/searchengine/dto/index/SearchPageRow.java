@@ -0,0 +1,15 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SearchPageRow {
+    private int pageId;
+    private String path;
+    private String title;
+    private int siteId;
+    private String siteUrl;
+    private String siteName;
+}
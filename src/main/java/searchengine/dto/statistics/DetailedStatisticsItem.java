@@ -11,4 +11,7 @@ public class DetailedStatisticsItem {
     private String error;
     private int pages;
     private int lemmas;
+    private long errors;
+    private long bytesFetched;
+    private double pagesPerSecond;
 }
@@ -0,0 +1,63 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteStatus;
+import searchengine.model.SiteTable;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Строка site, по которой сейчас ищется каждый адрес сайта.
+ */
+@Component
+@RequiredArgsConstructor
+public class ActiveSites {
+    private final SiteRepository siteRepository;
+
+    private final Map<String, Integer> active = new ConcurrentHashMap<>();
+
+    /**
+     * Для каждого адреса выбирается последнее проиндексированное поколение, а если такого нет - последнее вообще.
+     */
+    @PostConstruct
+    public void load() {
+        Map<String, SiteTable> chosen = new ConcurrentHashMap<>();
+        for (SiteTable site : siteRepository.findAll()) {
+            SiteTable current = chosen.get(site.getUrl());
+            if (current == null || isBetter(site, current)) {
+                chosen.put(site.getUrl(), site);
+            }
+        }
+        chosen.forEach((url, site) -> active.put(url, site.getId()));
+    }
+
+    public Integer siteId(String url) {
+        return active.get(url);
+    }
+
+    public List<Integer> siteIds() {
+        return new ArrayList<>(active.values());
+    }
+
+    /**
+     * Делает поколение siteId активным для url и возвращает id вытесненного поколения или null.
+     */
+    public Integer activate(String url, int siteId) {
+        return active.put(url, siteId);
+    }
+
+    private static boolean isBetter(SiteTable candidate, SiteTable current) {
+        boolean candidateIndexed = candidate.getStatus() == SiteStatus.INDEXED;
+        boolean currentIndexed = current.getStatus() == SiteStatus.INDEXED;
+        if (candidateIndexed != currentIndexed) {
+            return candidateIndexed;
+        }
+        return candidate.getId() > current.getId();
+    }
+}
@@ -0,0 +1,286 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.IndexWriterSettings;
+import searchengine.model.Page;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Пакетная запись лемм и индекса в отдельных потоках.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BatchIndexWriter {
+    private final IndexWriterSettings settings;
+    private final JdbcTemplate jdbcTemplate;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final PageLengths pageLengths;
+    private final TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PendingPage> queue;
+    private ExecutorService writers;
+    private volatile boolean running = true;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicInteger drainers = new AtomicInteger();
+    private final Object drainLock = new Object();
+    private final Set<Integer> failedSites = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder pagesWritten = new LongAdder();
+    private final LongAdder indexRowsInserted = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(settings.getQueueCapacity());
+        writers = Executors.newFixedThreadPool(settings.getThreads());
+        for (int i = 0; i < settings.getThreads(); i++) {
+            writers.execute(this::writeLoop);
+        }
+    }
+
+    /**
+     * Ставит страницу в очередь на запись. Если очередь заполнена, вызывающий поток ждёт.
+     */
+    public void submit(Page page, PageText pageText) {
+        StringIntMap lemmas = pageText.lemmaCounts();
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> positions = new HashMap<>(lemmas.size() * 2);
+        pageText.lemmaTokens().forEach((lemma, tokens) -> positions.put(lemma, TermPositions.encode(tokens)));
+        pending.incrementAndGet();
+        try {
+            queue.put(new PendingPage(page.getSite().getId(), page.getId(), pageText.tokenCount(), lemmas, positions));
+        } catch (InterruptedException e) {
+            pending.decrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дожидается, пока все поставленные в очередь страницы будут записаны в базу, и переносит frequency лемм.
+     */
+    public void drain() {
+        drainers.incrementAndGet();
+        try {
+            synchronized (drainLock) {
+                while (pending.get() > 0) {
+                    drainLock.wait(100);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            drainers.decrementAndGet();
+        }
+        lemmaDictionary.reconcile();
+    }
+
+    /**
+     * true, если с прошлого вызова часть страниц сайта не удалось записать: индекс сайта неполон.
+     */
+    public boolean consumeFailure(int siteId) {
+        return failedSites.remove(siteId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        drain();
+        running = false;
+        writers.shutdown();
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("pending", pending.get());
+        metrics.put("pagesWritten", pagesWritten.sum());
+        metrics.put("indexRowsInserted", indexRowsInserted.sum());
+        metrics.put("flushes", flushes.sum());
+        metrics.put("failedFlushes", failedFlushes.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("failedSites", failedSites.size());
+        return metrics;
+    }
+
+    private void writeLoop() {
+        List<PendingPage> batch = new ArrayList<>();
+        int rows = 0;
+        long deadline = System.currentTimeMillis() + settings.getFlushIntervalMillis();
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            PendingPage page;
+            try {
+                page = queue.poll(settings.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                page = null;
+                running = false;
+            }
+            if (page != null) {
+                batch.add(page);
+                rows += page.lemmas.size();
+            }
+            boolean flushNow = page == null || rows >= settings.getBatchSize()
+                    || System.currentTimeMillis() >= deadline
+                    || (drainers.get() > 0 && queue.isEmpty());
+            if (flushNow && !batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+                rows = 0;
+            }
+            if (batch.isEmpty()) {
+                deadline = System.currentTimeMillis() + settings.getFlushIntervalMillis();
+            }
+        }
+    }
+
+    private void flush(List<PendingPage> batch) {
+        try {
+            Map<Integer, List<PendingPage>> bySite = new HashMap<>();
+            for (PendingPage page : batch) {
+                bySite.computeIfAbsent(page.siteId, id -> new ArrayList<>()).add(page);
+            }
+            for (Map.Entry<Integer, List<PendingPage>> entry : bySite.entrySet()) {
+                try {
+                    flushSite(entry.getKey(), entry.getValue());
+                    pagesWritten.add(entry.getValue().size());
+                } catch (RuntimeException e) {
+                    failedFlushes.increment();
+                    failedSites.add(entry.getKey());
+                    log.error("Не удалось записать {} страниц сайта {}: {}", entry.getValue().size(), entry.getKey(), e.getMessage());
+                }
+            }
+            flushes.increment();
+        } finally {
+            pending.addAndGet(-batch.size());
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Строки index и длины страниц пишутся одной транзакцией.
+     */
+    private void flushSite(int siteId, List<PendingPage> pages) {
+        StringIntMap frequencyDeltas = new StringIntMap();
+        for (PendingPage page : pages) {
+            page.lemmas.forEach((lemma, rank) -> frequencyDeltas.addTo(lemma, 1));
+        }
+        Map<String, Integer> lemmaIds = withRetry(() -> lemmaDictionary.resolveIds(siteId, frequencyDeltas.keys()));
+        withRetry(() -> transactionTemplate.execute(status -> {
+            insertIndexes(pages, lemmaIds);
+            updateWordCounts(pages);
+            return null;
+        }));
+        for (PendingPage page : pages) {
+            pageLengths.set(siteId, page.pageId, page.wordCount);
+        }
+        frequencyDeltas.forEach((lemma, delta) -> lemmaDictionary.add(siteId, lemma, delta));
+        for (PendingPage page : pages) {
+            invertedIndex.addPage(siteId, page.pageId, page.lemmas, page.positions);
+        }
+    }
+
+    /**
+     * Повторяет действие при взаимоблокировке (MySQL 1213) или таймауте блокировки (1205).
+     */
+    private <T> T withRetry(Supplier<T> action) {
+        long backoff = settings.getRetryBackoffMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return action.get();
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= settings.getFlushRetries()) {
+                    throw e;
+                }
+                retries.increment();
+                log.warn("Конфликт блокировок при записи индекса, повтор через {} мс: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    private void insertIndexes(List<PendingPage> pages, Map<String, Integer> lemmaIds) {
+        List<Object[]> rows = new ArrayList<>();
+        for (PendingPage page : pages) {
+            page.lemmas.forEach((lemma, rank) -> {
+                Integer lemmaId = lemmaIds.get(lemma);
+                if (lemmaId != null) {
+                    rows.add(new Object[]{page.pageId, lemmaId, (float) rank, page.positions.get(lemma)});
+                }
+            });
+        }
+        for (int from = 0; from < rows.size(); from += settings.getBatchSize()) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + settings.getBatchSize(), rows.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES ");
+            Object[] args = new Object[chunk.size() * 4];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                System.arraycopy(chunk.get(i), 0, args, i * 4, 4);
+            }
+            jdbcTemplate.update(sql.toString(), args);
+            indexRowsInserted.add(chunk.size());
+        }
+    }
+
+    /**
+     * Длина страницы в словах нужна BM25; она пишется в page.word_count одним пакетом на пачку.
+     */
+    private void updateWordCounts(List<PendingPage> pages) {
+        List<Object[]> args = new ArrayList<>(pages.size());
+        for (PendingPage page : pages) {
+            args.add(new Object[]{page.wordCount, page.pageId});
+        }
+        jdbcTemplate.batchUpdate("UPDATE page SET word_count = ? WHERE id = ?", args);
+    }
+
+    private static final class PendingPage {
+        private final int siteId;
+        private final int pageId;
+        private final int wordCount;
+        private final StringIntMap lemmas;
+        private final Map<String, byte[]> positions;
+
+        private PendingPage(int siteId, int pageId, int wordCount, StringIntMap lemmas, Map<String, byte[]> positions) {
+            this.siteId = siteId;
+            this.pageId = pageId;
+            this.wordCount = wordCount;
+            this.lemmas = lemmas;
+            this.positions = positions;
+        }
+    }
+}
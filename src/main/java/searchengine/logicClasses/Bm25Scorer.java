@@ -0,0 +1,42 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.List;
+
+/**
+ * BM25 по статистике сайта и длинам страниц.
+ */
+@Component("bm25")
+@RequiredArgsConstructor
+public class Bm25Scorer implements Scorer {
+    private final IndexStatistics statistics;
+    private final PageLengths pageLengths;
+    private final SearchSettings settings;
+
+    @Override
+    public SiteScorer forSite(int siteId, List<String> lemmas) {
+        int pages = statistics.pageCount(siteId);
+        float[] idf = new float[lemmas.size()];
+        for (int term = 0; term < idf.length; term++) {
+            int frequency = statistics.documentFrequency(siteId, lemmas.get(term));
+            idf[term] = (float) Math.log(1 + (pages - frequency + 0.5) / (frequency + 0.5));
+        }
+        float k1 = (float) settings.getBm25K1();
+        float b = (float) settings.getBm25B();
+        double averageLength = pageLengths.averageLength(siteId);
+        return match -> {
+            int length = pageLengths.length(siteId, match.pageId());
+            float norm = averageLength == 0 || length == 0 ? 1 : (float) (length / averageLength);
+            float lengthFactor = k1 * (1 - b + b * norm);
+            float score = 0;
+            for (int term = 0; term < idf.length; term++) {
+                float frequency = match.rank(term);
+                score += idf[term] * frequency * (k1 + 1) / (frequency + lengthFactor);
+            }
+            return score;
+        };
+    }
+}
@@ -0,0 +1,273 @@
+package searchengine.logicClasses;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Сжатый список страниц леммы: блоки varint-разностей id, ранги и позиции.
+ */
+public final class CompressedPostings {
+    static final int BLOCK_SIZE = 128;
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_RANK = Character.MAX_VALUE;
+
+    private final int size;
+    private final int blocks;
+    private final ByteBuffer buffer;
+    private final int ranksStart;
+    private final int dataStart;
+    private final int positionsStart;
+
+    private CompressedPostings(int size, ByteBuffer buffer) {
+        this.size = size;
+        this.blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.buffer = buffer;
+        this.ranksStart = 4 + blocks * 12;
+        this.dataStart = ranksStart + size * 2;
+        this.positionsStart = size == 0 ? dataStart : dataStart + buffer.getInt(0);
+    }
+
+    /**
+     * positions[i] - позиции страницы pageIds[i] в формате TermPositions или null, если они неизвестны.
+     */
+    public static CompressedPostings encode(int[] pageIds, float[] ranks, byte[][] positions, int size) {
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int header = 4 + blocks * 12 + size * 2;
+        ByteBuffer table = ByteBuffer.allocate(header);
+        byte[] data = new byte[Math.max(16, size * 2)];
+        byte[] positionData = new byte[16];
+        int dataLength = 0;
+        int positionLength = 0;
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                table.putInt(4 + i / BLOCK_SIZE * 12 + 4, dataLength);
+                table.putInt(4 + i / BLOCK_SIZE * 12 + 8, positionLength);
+            }
+            if (data.length - dataLength < 5) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            dataLength = writeVarint(data, dataLength, pageIds[i] - previous);
+            previous = pageIds[i];
+
+            byte[] pagePositions = positions[i] == null ? EMPTY : positions[i];
+            if (positionData.length - positionLength < pagePositions.length + 5) {
+                positionData = Arrays.copyOf(positionData, Math.max(positionData.length * 2, positionLength + pagePositions.length + 5));
+            }
+            positionLength = writeVarint(positionData, positionLength, pagePositions.length);
+            System.arraycopy(pagePositions, 0, positionData, positionLength, pagePositions.length);
+            positionLength += pagePositions.length;
+
+            table.putChar(4 + blocks * 12 + i * 2, quantize(ranks[i]));
+            if (i % BLOCK_SIZE == BLOCK_SIZE - 1 || i == size - 1) {
+                table.putInt(4 + i / BLOCK_SIZE * 12, pageIds[i]);
+            }
+        }
+        table.putInt(0, dataLength);
+        byte[] bytes = Arrays.copyOf(table.array(), header + dataLength + positionLength);
+        System.arraycopy(data, 0, bytes, header, dataLength);
+        System.arraycopy(positionData, 0, bytes, header + dataLength, positionLength);
+        return new CompressedPostings(size, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Список поверх готового буфера в формате bytes(), без копирования.
+     */
+    public static CompressedPostings wrap(ByteBuffer buffer, int size) {
+        return new CompressedPostings(size, buffer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int sizeInBytes() {
+        return buffer.limit();
+    }
+
+    /**
+     * Содержимое списка для записи в сегмент.
+     */
+    public ByteBuffer bytes() {
+        return buffer.duplicate();
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int blockLastId(int block) {
+        return buffer.getInt(4 + block * 12);
+    }
+
+    private static int writeVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static char quantize(float rank) {
+        return (char) Math.max(0, Math.min(MAX_RANK, Math.round(rank)));
+    }
+
+    /**
+     * Последовательный проход по списку с возможностью перейти к первому id не меньше заданного.
+     */
+    public final class Cursor {
+        private final int[] block = new int[BLOCK_SIZE];
+        private final int[] positionStarts = new int[BLOCK_SIZE];
+        private final int[] positionEnds = new int[BLOCK_SIZE];
+        private int positionsBlock = -1;
+        private int blockIndex = -1;
+        private int blockLength;
+        private int position = -1;
+        private boolean exhausted;
+
+        public int pageId() {
+            return block[position];
+        }
+
+        public float rank() {
+            return buffer.getChar(ranksStart + (blockIndex * BLOCK_SIZE + position) * 2);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Номера слов текущей страницы, где встречается лемма.
+         */
+        public int[] positions() {
+            if (positionsBlock != blockIndex) {
+                int offset = positionsStart + buffer.getInt(4 + blockIndex * 12 + 8);
+                for (int i = 0; i < blockLength; i++) {
+                    int length = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = buffer.get(offset++);
+                        length |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    positionStarts[i] = offset;
+                    offset += length;
+                    positionEnds[i] = offset;
+                }
+                positionsBlock = blockIndex;
+            }
+            return TermPositions.decode(buffer, positionStarts[position], positionEnds[position] - positionStarts[position]);
+        }
+
+        public boolean next() {
+            if (exhausted) {
+                return false;
+            }
+            if (blockIndex >= 0 && position + 1 < blockLength) {
+                position++;
+                return true;
+            }
+            if (blockIndex + 1 >= blocks) {
+                exhausted = true;
+                return false;
+            }
+            decodeBlock(blockIndex + 1);
+            position = 0;
+            return true;
+        }
+
+        /**
+         * Сдвигает курсор на первую страницу с id >= target. Возвращает false, если список закончился.
+         */
+        public boolean advance(int target) {
+            if (exhausted) {
+                return false;
+            }
+            if (position >= 0 && block[position] >= target) {
+                return true;
+            }
+            int from = Math.max(blockIndex, 0);
+            if (size == 0 || blockLastId(blocks - 1) < target) {
+                exhausted = true;
+                return false;
+            }
+            int targetBlock = gallopBlocks(from, target);
+            if (targetBlock != blockIndex) {
+                decodeBlock(targetBlock);
+                position = 0;
+            }
+            position = gallop(block, Math.max(position, 0), blockLength, target);
+            return true;
+        }
+
+        private void decodeBlock(int index) {
+            int offset = dataStart + buffer.getInt(4 + index * 12 + 4);
+            int previous = index == 0 ? 0 : blockLastId(index - 1);
+            blockLength = Math.min(BLOCK_SIZE, size - index * BLOCK_SIZE);
+            for (int i = 0; i < blockLength; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(offset++);
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += delta;
+                block[i] = previous;
+            }
+            blockIndex = index;
+        }
+
+        /**
+         * Экспоненциальный поиск первого элемента >= target в [from, to).
+         */
+        private int gallopBlocks(int from, int target) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < blocks && blockLastId(high) < target) {
+                low = high + 1;
+                high = from + step;
+                step <<= 1;
+            }
+            high = Math.min(high, blocks - 1);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (blockLastId(middle) < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Экспоненциальный поиск первого элемента >= target в [from, to).
+     */
+    private static int gallop(int[] values, int from, int to, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && values[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, to - 1);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
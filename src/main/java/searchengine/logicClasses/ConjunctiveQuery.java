@@ -0,0 +1,94 @@
+package searchengine.logicClasses;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Пересечение (AND) списков страниц лемм сайта, от самого редкого списка.
+ */
+public class ConjunctiveQuery {
+    private final CompressedPostings.Cursor[] cursors;
+    private final int[] termOrder;
+    private final int[][] positions;
+    private boolean exhausted;
+    private int pageId;
+
+    public ConjunctiveQuery(List<CompressedPostings> postings) {
+        Integer[] order = new Integer[postings.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            if (postings.get(i) == null || postings.get(i).size() == 0) {
+                exhausted = true;
+            }
+        }
+        cursors = new CompressedPostings.Cursor[order.length];
+        termOrder = new int[order.length];
+        positions = new int[order.length][];
+        exhausted = exhausted || order.length == 0;
+        if (exhausted) {
+            return;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> postings.get(i).size()));
+        for (int i = 0; i < order.length; i++) {
+            cursors[i] = postings.get(order[i]).cursor();
+            termOrder[order[i]] = i;
+        }
+    }
+
+    public boolean next() {
+        Arrays.fill(positions, null);
+        if (exhausted || !cursors[0].next()) {
+            return finish();
+        }
+        int candidate = cursors[0].pageId();
+        int i = 1;
+        while (i < cursors.length) {
+            if (!cursors[i].advance(candidate)) {
+                return finish();
+            }
+            int found = cursors[i].pageId();
+            if (found == candidate) {
+                i++;
+                continue;
+            }
+            if (!cursors[0].advance(found)) {
+                return finish();
+            }
+            candidate = cursors[0].pageId();
+            i = 1;
+        }
+        pageId = candidate;
+        return true;
+    }
+
+    public int pageId() {
+        return pageId;
+    }
+
+    /**
+     * rank текущей страницы для леммы с указанным номером в исходном списке.
+     */
+    public float rank(int term) {
+        return cursors[termOrder[term]].rank();
+    }
+
+    /**
+     * Позиции леммы с указанным номером на текущей странице. Декодируются при первом запросе и запоминаются до next.
+     */
+    public int[] positions(int term) {
+        if (positions[term] == null) {
+            positions[term] = cursors[termOrder[term]].positions();
+        }
+        return positions[term];
+    }
+
+    public int terms() {
+        return cursors.length;
+    }
+
+    private boolean finish() {
+        exhausted = true;
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package searchengine.logicClasses;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 содержимого страницы в шестнадцатеричном виде: по нему повторный обход понимает, что страница не изменилась.
+ */
+public final class ContentHash {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    public static String of(String content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
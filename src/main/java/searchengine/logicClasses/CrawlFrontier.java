@@ -0,0 +1,67 @@
+package searchengine.logicClasses;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь адресов сайта для обхода в ширину.
+ */
+public class CrawlFrontier {
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final VisitedUrlSet visited;
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final int maxDepth;
+
+    public CrawlFrontier(int maxDepth, VisitedUrlSet visited) {
+        this.maxDepth = maxDepth;
+        this.visited = visited;
+    }
+
+    public boolean offer(String url, int depth) {
+        if (maxDepth > 0 && depth > maxDepth) {
+            return false;
+        }
+        if (!visited.claim(url)) {
+            return false;
+        }
+        unfinished.incrementAndGet();
+        queue.add(new Task(url, depth));
+        return true;
+    }
+
+    public Task poll(long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void done() {
+        unfinished.decrementAndGet();
+    }
+
+    public boolean isFinished() {
+        return unfinished.get() == 0;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public static final class Task {
+        private final String url;
+        private final int depth;
+
+        private Task(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.logicClasses;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Скорость обхода по сайтам для /api/statistics, состояние множеств найденных адресов и стадий конвейера обхода для /api/metrics.
+ */
+@Component
+public class CrawlMonitor {
+    private final Map<Integer, Progress> sites = new ConcurrentHashMap<>();
+
+    public void start(int siteId, VisitedUrlSet visited, Supplier<Map<String, Object>> stages) {
+        sites.put(siteId, new Progress(visited, stages));
+    }
+
+    public void pageCrawled(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.pages.increment();
+        }
+    }
+
+    public void pageNotModified(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.notModified.increment();
+        }
+    }
+
+    public void pageUnchanged(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.unchanged.increment();
+        }
+    }
+
+    public void pageChanged(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.changed.increment();
+        }
+    }
+
+    public void pageRemoved(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.removed.increment();
+        }
+    }
+
+    public void finish(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress != null) {
+            progress.finishNanos = System.nanoTime();
+        }
+    }
+
+    public double pagesPerSecond(int siteId) {
+        Progress progress = sites.get(siteId);
+        if (progress == null) {
+            return 0;
+        }
+        long end = progress.finishNanos != 0 ? progress.finishNanos : System.nanoTime();
+        double seconds = (end - progress.startNanos) / 1e9;
+        return seconds <= 0 ? 0 : progress.pages.sum() / seconds;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Progress> site : sites.entrySet()) {
+            Map<String, Object> siteMetrics = new LinkedHashMap<>();
+            siteMetrics.put("pagesPerSecond", pagesPerSecond(site.getKey()));
+            siteMetrics.put("pages", site.getValue().pages.sum());
+            siteMetrics.put("notModified", site.getValue().notModified.sum());
+            siteMetrics.put("unchanged", site.getValue().unchanged.sum());
+            siteMetrics.put("changed", site.getValue().changed.sum());
+            siteMetrics.put("removed", site.getValue().removed.sum());
+            siteMetrics.put("visited", site.getValue().visited.metrics());
+            siteMetrics.put("stages", site.getValue().stages.get());
+            metrics.put(String.valueOf(site.getKey()), siteMetrics);
+        }
+        return metrics;
+    }
+
+    private static final class Progress {
+        private final long startNanos = System.nanoTime();
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private final LongAdder changed = new LongAdder();
+        private final LongAdder removed = new LongAdder();
+        private final VisitedUrlSet visited;
+        private final Supplier<Map<String, Object>> stages;
+        private volatile long finishNanos;
+
+        private Progress(VisitedUrlSet visited, Supplier<Map<String, Object>> stages) {
+            this.visited = visited;
+            this.stages = stages;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package searchengine.logicClasses;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Стадия конвейера обхода: ограниченная очередь и счётчики.
+ */
+public class CrawlStage<T> {
+    private final String name;
+    private final int threads;
+    private final BlockingQueue<T> queue;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    public CrawlStage(String name, int threads, int queueCapacity) {
+        this(name, threads, new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * Стадия без своей очереди, глубина передаётся в metrics(int).
+     */
+    public CrawlStage(String name, int threads) {
+        this(name, threads, null);
+    }
+
+    private CrawlStage(String name, int threads, BlockingQueue<T> queue) {
+        this.name = name;
+        this.threads = threads;
+        this.queue = queue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void put(T item) throws InterruptedException {
+        if (queue.offer(item)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            queue.put(item);
+        } finally {
+            blockedNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public T poll(long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void processed(long nanos) {
+        processed.increment();
+        busyNanos.add(nanos);
+    }
+
+    public void failed() {
+        failures.increment();
+    }
+
+    public void abandoned() {
+        abandoned.increment();
+    }
+
+    /**
+     * Очищает очередь при остановке обхода и возвращает число брошенных страниц.
+     */
+    public int abandonQueued() {
+        int count = queue.drainTo(new ArrayList<>());
+        abandoned.add(count);
+        return count;
+    }
+
+    public Map<String, Object> metrics() {
+        return metrics(queue == null ? 0 : queue.size());
+    }
+
+    /**
+     * Метрики с глубиной очереди, которую стадия не хранит сама (очередь скачивания - это CrawlFrontier).
+     */
+    public Map<String, Object> metrics(int queueDepth) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long count = processed.sum();
+        metrics.put("threads", threads);
+        metrics.put("queueDepth", queueDepth);
+        metrics.put("processed", count);
+        metrics.put("perSecond", seconds <= 0 ? 0 : count / seconds);
+        metrics.put("avgMillis", count == 0 ? 0 : busyNanos.sum() / 1e6 / count);
+        metrics.put("blockedMillis", blockedNanos.sum() / 1_000_000);
+        metrics.put("failures", failures.sum());
+        metrics.put("abandoned", abandoned.sum());
+        return metrics;
+    }
+}
@@ -2,59 +2,34 @@ package searchengine.logicClasses;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
-import searchengine.model.IndexTable;
-import searchengine.model.Lemma;
 import searchengine.model.Page;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 @Component
 @RequiredArgsConstructor
 public class FillingLemmaAndIndex {
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
+    private final Lemmatization lemmatization;
+    private final BatchIndexWriter batchIndexWriter;
+    private final PageContentStore contentStore;
 
-    public void fillingLemmaIndex(Page page, boolean flag) throws IOException {
+    public void fillingLemmaIndex(Page page, String text, boolean flag) throws IOException {
         if (flag) {
-            HashMap<String, Integer> map = Lemmatization.lemmatization(page.getContent());
-            List<Lemma> lemmaList = new ArrayList<>();
-            List<IndexTable> indexList = new ArrayList<>();
-
-            for (String lemma : map.keySet()) {
-                IndexTable index = new IndexTable();
-                index.setPage(page);
-                Lemma detectedLemma = lemmaRepository.findByLemmaAndSiteId(lemma, page.getSite().getId());
+            store(page, analyze(text));
+        }
+    }
 
-                if (detectedLemma == null) {
-                    Lemma newLemma = new Lemma();
-                    newLemma.setSite(page.getSite());
-                    newLemma.setLemma(lemma);
-                    newLemma.setFrequency(1);
-                    lemmaList.add(newLemma);
-                    index.setLemma(newLemma);
-                } else {
-                    detectedLemma.setFrequency(detectedLemma.getFrequency() + 1);
-                    lemmaList.add(detectedLemma);
-                    index.setLemma(detectedLemma);
-                }
+    /**
+     * Морфология без обращений к базе - стадия lemmatize конвейера обхода.
+     */
+    public PageText analyze(String text) {
+        return lemmatization.analyze(text);
+    }
 
-                index.setRank(map.get(lemma));
-                indexList.add(index);
-                if (lemmaList.size() == 100) {
-                    lemmaRepository.saveAll(lemmaList);
-                    lemmaList.clear();
-                }
-                if (indexList.size() == 100) {
-                    indexRepository.saveAll(indexList);
-                    indexList.clear();
-                }
-            }
-            lemmaRepository.saveAll(lemmaList);
-            indexRepository.saveAll(indexList);
-        }
+    /**
+     * Сохраняет текст страницы и ставит её в очередь BatchIndexWriter - стадия persist конвейера обхода.
+     */
+    public void store(Page page, PageText pageText) {
+        contentStore.saveText(page.getId(), pageText);
+        batchIndexWriter.submit(page, pageText);
     }
 }
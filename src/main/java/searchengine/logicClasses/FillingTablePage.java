@@ -1,86 +1,260 @@
 package searchengine.logicClasses;
 
-import lombok.RequiredArgsConstructor;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import searchengine.controllers.ApiController;
+import searchengine.dto.index.PageValidators;
 import searchengine.model.Page;
-import searchengine.model.SiteStatus;
 import searchengine.model.SiteTable;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
 
-import java.util.concurrent.RecursiveAction;
+/**
+ * Обработка страницы по стадиям SiteCrawler: fetch, parse, lemmatize, persist.
+ */
+public class FillingTablePage {
+    private static final int NOT_MODIFIED = 304;
 
-@RequiredArgsConstructor
-public class FillingTablePage extends RecursiveAction {
-    private String url;
+    private final SiteTable site;
+    private final CrawlFrontier frontier;
     private final PageRepository pageRepository;
-    private SiteTable site;
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
     private final FillingLemmaAndIndex fillingLemmaAndIndex;
+    private final DeleteLemma delete;
+    private final PolitenessLimiter politenessLimiter;
+    private final CrawlMonitor crawlMonitor;
+    private final UrlNormalizer urlNormalizer;
+    private final LinkFilter linkFilter;
+    private final Map<String, PageValidators> knownPages;
+    private final PageContentStore contentStore;
+    private final SiteCounters siteCounters;
 
-    public FillingTablePage(String url, SiteTable site, PageRepository pageRepository, IndexRepository indexRepository, LemmaRepository lemmaRepository,FillingLemmaAndIndex fillingLemmaAndIndex) {
-        this.url = url;
+    public FillingTablePage(SiteTable site, CrawlFrontier frontier, PageRepository pageRepository, FillingLemmaAndIndex fillingLemmaAndIndex,
+                            DeleteLemma delete, PolitenessLimiter politenessLimiter, CrawlMonitor crawlMonitor,
+                            UrlNormalizer urlNormalizer, LinkFilter linkFilter, Map<String, PageValidators> knownPages,
+                            PageContentStore contentStore, SiteCounters siteCounters) {
         this.site = site;
+        this.frontier = frontier;
         this.pageRepository = pageRepository;
-        this.indexRepository = indexRepository;
-        this.lemmaRepository = lemmaRepository;
-        this.fillingLemmaAndIndex=fillingLemmaAndIndex;
+        this.fillingLemmaAndIndex = fillingLemmaAndIndex;
+        this.delete = delete;
+        this.politenessLimiter = politenessLimiter;
+        this.crawlMonitor = crawlMonitor;
+        this.urlNormalizer = urlNormalizer;
+        this.linkFilter = linkFilter;
+        this.knownPages = knownPages;
+        this.contentStore = contentStore;
+        this.siteCounters = siteCounters;
     }
 
-    @Override
-    protected void compute() {
+    /**
+     * HTTP-запрос. Страница прошлого обхода, которую не удалось скачать, остаётся в базе как есть.
+     */
+    public CrawledPage fetch(CrawlFrontier.Task task) throws InterruptedException {
+        String url = task.getUrl();
+        CrawledPage page = new CrawledPage(task, url.substring(site.getUrl().length() - 1));
+        page.known = knownPages.remove(page.path);
         try {
-            Thread.sleep(150);
-            Document document = Jsoup.connect(url).
+            politenessLimiter.acquire(url);
+            Connection connection = Jsoup.connect(url).
                     userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com")
-                    .get();
-
-            Page page = new Page();
-            page.setPath(url.substring(site.getUrl().length() - 1));
-            page.setSite(site);
-            page.setCode(200);
-            page.setContent(String.valueOf(document));
-            pageRepository.save(page);
+                    .referrer("http://www.google.com");
+            if (page.known != null && page.known.getEtag() != null) {
+                connection.header("If-None-Match", page.known.getEtag());
+            }
+            if (page.known != null && page.known.getLastModified() != null) {
+                connection.header("If-Modified-Since", page.known.getLastModified());
+            }
+            page.response = connection.execute();
+            siteCounters.bytesFetched(site.getId(), page.response.bodyAsBytes().length);
+        } catch (IOException e) {
+            page.outcome = page.known != null ? Outcome.SKIPPED : Outcome.FAILED;
+        }
+        return page;
+    }
 
-            fillingLemmaAndIndex.fillingLemmaIndex(page, ApiController.checkStartFlag.get());
-
-            Elements elements = document.select("a");
-            for (Element e : elements) {
-                String newHref = e.absUrl("href").replaceAll("/$", "");
-                if (pageRepository.findByPath(newHref.substring(site.getUrl().length() - 1)) != null || newHref.isEmpty() ||
-                        !newHref.contains(site.getUrl()) ||
-                        newHref.contains(".pdf") || newHref.contains(".png") ||
-                        newHref.contains(".jpg") || newHref.contains("#") ||
-                        newHref.contains(";") || newHref.contains(".com") || newHref.contains(".net") ||
-                        newHref.contains(".sql") || newHref.contains(".zip")) {
-                    continue;
-                }
-
-                if (ApiController.checkStartFlag.get()) {
-                    FillingTablePage pageIndexing = new FillingTablePage(newHref, site, pageRepository, indexRepository, lemmaRepository, fillingLemmaAndIndex);
-                    pageIndexing.fork();
-                    pageIndexing.join();
-                } else break;
+    /**
+     * Разбор ответа: решает, что делать со страницей, и отдаёт найденные ссылки в CrawlFrontier.
+     */
+    public void parse(CrawledPage page) {
+        Connection.Response response = page.response;
+        page.response = null;
+        Document document;
+        if (response.statusCode() == NOT_MODIFIED && page.known != null) {
+            document = storedDocument(page.known, page.task.getUrl());
+            page.outcome = Outcome.NOT_MODIFIED;
+        } else {
+            try {
+                document = response.parse();
+            } catch (IOException e) {
+                page.outcome = page.known != null ? Outcome.SKIPPED : Outcome.FAILED;
+                return;
             }
-        } catch (RuntimeException | InterruptedException e) {
-            e.getMessage();
-        } catch (IOException e){
-            Page page=new Page();
-            page.setPath(url.substring(site.getUrl().length() - 1));
-            page.setCode(500);
-            page.setSite(site);
+            page.content = String.valueOf(document);
+            page.contentHash = ContentHash.of(page.content);
+            page.etag = response.header("ETag");
+            page.lastModified = response.header("Last-Modified");
+            if (page.known != null && page.contentHash.equals(page.known.getContentHash())) {
+                page.outcome = Outcome.UNCHANGED;
+                page.content = null;
+            } else {
+                page.outcome = page.known != null ? Outcome.CHANGED : Outcome.NEW;
+                page.title = document.title();
+                page.text = document.text();
+            }
+        }
+
+        Elements elements = document.select("a");
+        for (Element e : elements) {
+            String newHref = urlNormalizer.normalize(e.absUrl("href"));
+            if (!linkFilter.accept(site.getUrl(), newHref)) {
+                continue;
+            }
+
+            if (ApiController.checkStartFlag.get()) {
+                frontier.offer(newHref, page.task.getDepth() + 1);
+            } else break;
+        }
+    }
+
+    public void lemmatize(CrawledPage page) {
+        page.pageText = fillingLemmaAndIndex.analyze(page.text);
+        page.text = null;
+    }
+
+    /**
+     * Запись в базу. Если очередь BatchIndexWriter заполнена, поток стадии ждёт.
+     */
+    public void persist(CrawledPage page) {
+        switch (page.outcome) {
+            case SKIPPED:
+                return;
+            case FAILED:
+                Page failed = new Page();
+                failed.setPath(page.path);
+                failed.setCode(500);
+                failed.setSite(site);
+                pageRepository.save(failed);
+                siteCounters.errorPageAdded(site.getId());
+                return;
+            case NOT_MODIFIED:
+                crawlMonitor.pageNotModified(site.getId());
+                break;
+            case UNCHANGED:
+                updateValidators(page.known, page.etag, page.lastModified);
+                crawlMonitor.pageUnchanged(site.getId());
+                break;
+            case CHANGED:
+                pageRepository.findById(page.known.getId()).ifPresent(changedPage -> {
+                    delete.deleteLemmaAndIndex(changedPage);
+                    contentStore.delete(changedPage.getId());
+                    pageRepository.delete(changedPage);
+                    siteCounters.pageRemoved(site.getId());
+                });
+                crawlMonitor.pageChanged(site.getId());
+                saveNewPage(page);
+                break;
+            case NEW:
+                saveNewPage(page);
+                break;
+        }
+        crawlMonitor.pageCrawled(site.getId());
+    }
+
+    /**
+     * Удаляет страницы прошлого обхода, до которых текущий обход не дошёл: на сайте их больше нет.
+     */
+    public void removeUnvisitedPages() {
+        for (PageValidators known : knownPages.values()) {
+            pageRepository.findById(known.getId()).ifPresent(page -> {
+                delete.deleteLemmaAndIndex(page);
+                contentStore.delete(page.getId());
+                pageRepository.delete(page);
+                siteCounters.pageRemoved(site.getId());
+                crawlMonitor.pageRemoved(site.getId());
+            });
+        }
+        knownPages.clear();
+    }
+
+    private void saveNewPage(CrawledPage crawled) {
+        Page page = new Page();
+        page.setPath(crawled.path);
+        page.setSite(site);
+        page.setCode(200);
+        page.setTitle(crawled.title);
+        page.setContentHash(crawled.contentHash);
+        page.setEtag(crawled.etag);
+        page.setLastModified(crawled.lastModified);
+        pageRepository.save(page);
+        siteCounters.pageAdded(site.getId());
+        contentStore.save(page.getId(), crawled.content);
+
+        if (crawled.pageText != null) {
+            fillingLemmaAndIndex.store(page, crawled.pageText);
+        }
+    }
+
+    private Document storedDocument(PageValidators known, String url) {
+        return Jsoup.parse(contentStore.load(known.getId()), url);
+    }
+
+    private void updateValidators(PageValidators known, String etag, String lastModified) {
+        if (Objects.equals(etag, known.getEtag()) && Objects.equals(lastModified, known.getLastModified())) {
+            return;
+        }
+        pageRepository.findById(known.getId()).ifPresent(page -> {
+            page.setEtag(etag);
+            page.setLastModified(lastModified);
             pageRepository.save(page);
+        });
+    }
+
+    private enum Outcome {
+        SKIPPED, FAILED, NOT_MODIFIED, UNCHANGED, CHANGED, NEW
+    }
+
+    /**
+     * Страница между стадиями конвейера.
+     */
+    public static final class CrawledPage {
+        private final CrawlFrontier.Task task;
+        private final String path;
+        private PageValidators known;
+        private Connection.Response response;
+        private Outcome outcome;
+        private String content;
+        private String contentHash;
+        private String etag;
+        private String lastModified;
+        private String title;
+        private String text;
+        private PageText pageText;
+
+        private CrawledPage(CrawlFrontier.Task task, String path) {
+            this.task = task;
+            this.path = path;
+        }
+
+        public String getUrl() {
+            return task.getUrl();
+        }
+
+        /**
+         * Страница уже обработана на стадии fetch и сразу идёт в persist.
+         */
+        public boolean isFetchFailed() {
+            return outcome != null;
+        }
 
+        public boolean needsLemmas() {
+            return outcome == Outcome.CHANGED || outcome == Outcome.NEW;
         }
     }
 }
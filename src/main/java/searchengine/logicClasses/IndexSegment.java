@@ -0,0 +1,271 @@
+package searchengine.logicClasses;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Неизменяемый сегмент индекса сайта на диске, формат - см. write.
+ */
+public final class IndexSegment {
+    private static final int MAGIC = 0x53454731;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 44;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int pageCount;
+    private final int maxPageId;
+    private final int pagesOffset;
+    private final int dictionaryOffset;
+
+    private IndexSegment(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Неизвестный формат сегмента " + path);
+        }
+        this.termCount = buffer.getInt(8);
+        this.pageCount = buffer.getInt(12);
+        this.maxPageId = buffer.getInt(16);
+        this.pagesOffset = (int) buffer.getLong(20);
+        this.dictionaryOffset = (int) buffer.getLong(28);
+    }
+
+    public static IndexSegment open(Path path, boolean verify) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        IndexSegment segment = new IndexSegment(path, buffer);
+        if (verify && segment.checksum() != Integer.toUnsignedLong(buffer.getInt(36))) {
+            throw new IOException("Контрольная сумма сегмента не совпадает: " + path);
+        }
+        return segment;
+    }
+
+    /**
+     * Записывает сегмент во временный файл и атомарно переименовывает его в path.
+     */
+    public static void write(Path path, SortedMap<String, CompressedPostings> postings, int[] pageIds) throws IOException {
+        SortedMap<byte[], Map.Entry<String, CompressedPostings>> terms = new TreeMap<>(Arrays::compareUnsigned);
+        for (Map.Entry<String, CompressedPostings> entry : postings.entrySet()) {
+            if (entry.getValue().size() > 0) {
+                terms.put(entry.getKey().getBytes(StandardCharsets.UTF_8), entry);
+            }
+        }
+        long postingsLength = 0;
+        long dictionaryLength = terms.size() * 4L;
+        for (Map.Entry<byte[], Map.Entry<String, CompressedPostings>> term : terms.entrySet()) {
+            postingsLength += term.getValue().getValue().sizeInBytes();
+            dictionaryLength += 2 + term.getKey().length + 16;
+        }
+        int[] sortedPages = pageIds.clone();
+        Arrays.sort(sortedPages);
+        byte[] pages = encodePages(sortedPages);
+        long total = HEADER_SIZE + postingsLength + pages.length + dictionaryLength;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Сегмент больше 2 ГБ: " + path);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        buffer.position(HEADER_SIZE);
+        long[] postingsOffsets = new long[terms.size()];
+        int term = 0;
+        for (Map.Entry<String, CompressedPostings> entry : terms.values()) {
+            postingsOffsets[term++] = buffer.position();
+            buffer.put(entry.getValue().bytes());
+        }
+        int pagesOffset = buffer.position();
+        buffer.put(pages);
+        int dictionaryOffset = buffer.position();
+        int entryOffset = terms.size() * 4;
+        term = 0;
+        for (byte[] key : terms.keySet()) {
+            buffer.putInt(dictionaryOffset + term * 4, entryOffset);
+            entryOffset += 2 + key.length + 16;
+            term++;
+        }
+        buffer.position(dictionaryOffset + terms.size() * 4);
+        term = 0;
+        for (Map.Entry<byte[], Map.Entry<String, CompressedPostings>> entry : terms.entrySet()) {
+            CompressedPostings list = entry.getValue().getValue();
+            buffer.putShort((short) entry.getKey().length);
+            buffer.put(entry.getKey());
+            buffer.putLong(postingsOffsets[term++]);
+            buffer.putInt(list.size());
+            buffer.putInt(list.sizeInBytes());
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, terms.size());
+        buffer.putInt(12, sortedPages.length);
+        buffer.putInt(16, sortedPages.length == 0 ? 0 : sortedPages[sortedPages.length - 1]);
+        buffer.putLong(20, pagesOffset);
+        buffer.putLong(28, dictionaryOffset);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, (int) total - HEADER_SIZE);
+        buffer.putInt(36, (int) crc.getValue());
+        buffer.putInt(40, 0);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        buffer.rewind();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public int maxPageId() {
+        return maxPageId;
+    }
+
+    public long sizeInBytes() {
+        return buffer.limit();
+    }
+
+    public CompressedPostings postings(String lemma) {
+        int entry = find(lemma.getBytes(StandardCharsets.UTF_8));
+        return entry < 0 ? null : postingsAt(entry);
+    }
+
+    public int documentFrequency(String lemma) {
+        int entry = find(lemma.getBytes(StandardCharsets.UTF_8));
+        return entry < 0 ? 0 : buffer.getInt(entry + 2 + buffer.getShort(entry) + 8);
+    }
+
+    public int[] pageIds() {
+        int[] ids = new int[pageCount];
+        int offset = pagesOffset;
+        int previous = 0;
+        for (int i = 0; i < pageCount; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(offset++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * Обходит все леммы сегмента в порядке словаря, передавая номер записи для postingsOf.
+     */
+    public void forEachTerm(ObjIntConsumer<String> consumer) {
+        for (int term = 0; term < termCount; term++) {
+            int entry = entryOffset(term);
+            int length = buffer.getShort(entry);
+            byte[] key = new byte[length];
+            buffer.get(entry + 2, key);
+            consumer.accept(new String(key, StandardCharsets.UTF_8), entry);
+        }
+    }
+
+    public CompressedPostings postingsOf(int entry) {
+        return postingsAt(entry);
+    }
+
+    private CompressedPostings postingsAt(int entry) {
+        int keyLength = buffer.getShort(entry);
+        int offset = (int) buffer.getLong(entry + 2 + keyLength);
+        int size = buffer.getInt(entry + 2 + keyLength + 8);
+        int length = buffer.getInt(entry + 2 + keyLength + 12);
+        ByteBuffer slice = buffer.slice(offset, length);
+        return CompressedPostings.wrap(slice, size);
+    }
+
+    private int find(byte[] key) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = entryOffset(middle);
+            int compare = compare(entry, key);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int entryOffset(int term) {
+        return dictionaryOffset + buffer.getInt(dictionaryOffset + term * 4);
+    }
+
+    private int compare(int entry, byte[] key) {
+        int length = buffer.getShort(entry);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = Byte.toUnsignedInt(buffer.get(entry + 2 + i)) - Byte.toUnsignedInt(key[i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private long checksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.slice(HEADER_SIZE, buffer.limit() - HEADER_SIZE);
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    private static byte[] encodePages(int[] sortedPages) {
+        byte[] bytes = new byte[Math.max(16, sortedPages.length * 3)];
+        int offset = 0;
+        int previous = 0;
+        for (int pageId : sortedPages) {
+            if (bytes.length - offset < 5) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int delta = pageId - previous;
+            while ((delta & ~0x7F) != 0) {
+                bytes[offset++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[offset++] = (byte) delta;
+            previous = pageId;
+        }
+        return Arrays.copyOf(bytes, offset);
+    }
+}
@@ -0,0 +1,103 @@
+package searchengine.logicClasses;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Число страниц сайта и число страниц с каждой леммой.
+ */
+@Component
+public class IndexStatistics {
+    private final Map<Integer, SiteStatistics> sites = new ConcurrentHashMap<>();
+
+    public void addPage(int siteId, Collection<String> lemmas) {
+        SiteStatistics site = site(siteId);
+        site.pages.incrementAndGet();
+        for (String lemma : lemmas) {
+            site.frequency(lemma).incrementAndGet();
+        }
+    }
+
+    /**
+     * Вызывается только для действительно удалённой страницы; lemmas - леммы, которые на ней были.
+     */
+    public void removePage(int siteId, Collection<String> lemmas) {
+        SiteStatistics site = sites.get(siteId);
+        if (site == null) {
+            return;
+        }
+        site.pages.decrementAndGet();
+        for (String lemma : lemmas) {
+            AtomicInteger frequency = site.frequencies.get(lemma);
+            if (frequency != null) {
+                frequency.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Массовое заполнение при загрузке индекса.
+     */
+    public void addPages(int siteId, int pages) {
+        site(siteId).pages.addAndGet(pages);
+    }
+
+    public void addFrequency(int siteId, String lemma, int pages) {
+        site(siteId).frequency(lemma).addAndGet(pages);
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public int pageCount(int siteId) {
+        SiteStatistics site = sites.get(siteId);
+        return site == null ? 0 : Math.max(site.pages.get(), 0);
+    }
+
+    public int documentFrequency(int siteId, String lemma) {
+        SiteStatistics site = sites.get(siteId);
+        AtomicInteger frequency = site == null ? null : site.frequencies.get(lemma);
+        return frequency == null ? 0 : Math.max(frequency.get(), 0);
+    }
+
+    /**
+     * Доля страниц сайта, на которых встречается лемма (0, если страниц нет).
+     */
+    public double pageFraction(int siteId, String lemma) {
+        int pages = pageCount(siteId);
+        return pages == 0 ? 0 : (double) documentFrequency(siteId, lemma) / pages;
+    }
+
+    public Map<String, Object> metrics() {
+        long lemmas = 0;
+        long pages = 0;
+        for (SiteStatistics site : sites.values()) {
+            lemmas += site.frequencies.size();
+            pages += site.pages.get();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sites", sites.size());
+        metrics.put("pages", pages);
+        metrics.put("lemmas", lemmas);
+        return metrics;
+    }
+
+    private SiteStatistics site(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteStatistics());
+    }
+
+    private static final class SiteStatistics {
+        private final AtomicInteger pages = new AtomicInteger();
+        private final Map<String, AtomicInteger> frequencies = new ConcurrentHashMap<>();
+
+        private AtomicInteger frequency(String lemma) {
+            return frequencies.computeIfAbsent(lemma, l -> new AtomicInteger());
+        }
+    }
+}
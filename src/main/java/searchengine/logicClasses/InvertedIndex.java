@@ -0,0 +1,355 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import searchengine.dto.index.PostingRow;
+import searchengine.model.SiteTable;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Обратный индекс: лемма -> список страниц с rank по сайтам.
+ */
+@Slf4j
+@Component
+@DependsOn("schemaMigrations")
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private final SiteRepository siteRepository;
+    private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
+    private final SegmentStore segmentStore;
+    private final IndexStatistics statistics;
+
+    private final Map<Integer, Map<String, PostingList>> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, List<IndexSegment>> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> deletedPages = new ConcurrentHashMap<>();
+    private final Map<Integer, ReadWriteLock> locks = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        for (SiteTable site : siteRepository.findAll()) {
+            int afterPageId = segmentStore.isEnabled() ? loadSegments(site.getId()) : 0;
+            Map<String, PostingList> lemmas = siteLemmas(site.getId());
+            int lastPageId = 0;
+            int pages = 0;
+            List<PostingRow> rows = afterPageId == 0 ? indexRepository.findPostingsBySiteId(site.getId())
+                    : indexRepository.findPostingsBySiteIdAfterPage(site.getId(), afterPageId);
+            for (PostingRow row : rows) {
+                lemmas.computeIfAbsent(row.getLemma(), l -> new PostingList()).add(row.getPageId(), row.getRank(), row.getPositions());
+                if (row.getPageId() != lastPageId) {
+                    lastPageId = row.getPageId();
+                    pages++;
+                }
+            }
+            statistics.addPages(site.getId(), pages);
+            lemmas.forEach((lemma, postingList) -> statistics.addFrequency(site.getId(), lemma, postingList.size()));
+        }
+    }
+
+    public void addPage(int siteId, int pageId, StringIntMap lemmaRanks, Map<String, byte[]> lemmaPositions) {
+        if (lemmaRanks.isEmpty()) {
+            return;
+        }
+        ReadWriteLock lock = lock(siteId);
+        lock.readLock().lock();
+        try {
+            Map<String, PostingList> lemmas = siteLemmas(siteId);
+            lemmaRanks.forEach((lemma, rank) -> lemmas.compute(lemma, (key, postingList) -> {
+                PostingList list = postingList == null ? new PostingList() : postingList;
+                list.add(pageId, rank, lemmaPositions.get(lemma));
+                return list;
+            }));
+            statistics.addPage(siteId, lemmaRanks.keys());
+            advanceGeneration(siteId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void removePage(int siteId, int pageId, Collection<String> pageLemmas) {
+        ReadWriteLock lock = lock(siteId);
+        lock.readLock().lock();
+        try {
+            Map<String, PostingList> lemmas = sites.get(siteId);
+            List<String> removedLemmas = new ArrayList<>();
+            if (lemmas != null) {
+                for (String lemma : pageLemmas) {
+                    lemmas.computeIfPresent(lemma, (l, postingList) -> {
+                        if (postingList.remove(pageId)) {
+                            removedLemmas.add(lemma);
+                        }
+                        return postingList.size() == 0 ? null : postingList;
+                    });
+                }
+            }
+            if (removedLemmas.isEmpty() && inSegments(siteId, pageId)
+                    && deletedPages.computeIfAbsent(siteId, id -> ConcurrentHashMap.newKeySet()).add(pageId)) {
+                removedLemmas.addAll(pageLemmas);
+            }
+            if (!removedLemmas.isEmpty()) {
+                statistics.removePage(siteId, removedLemmas);
+                advanceGeneration(siteId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void removeSite(int siteId) {
+        ReadWriteLock lock = lock(siteId);
+        lock.writeLock().lock();
+        try {
+            sites.remove(siteId);
+            statistics.removeSite(siteId);
+            segments.remove(siteId);
+            deletedPages.remove(siteId);
+            segmentStore.deleteSite(siteId);
+            advanceGeneration(siteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CompressedPostings postings(int siteId, String lemma) {
+        Map<String, PostingList> lemmas = sites.get(siteId);
+        PostingList postingList = lemmas == null ? null : lemmas.get(lemma);
+        return postingList == null ? null : postingList.snapshot();
+    }
+
+    /**
+     * Списки страниц лемм сайта: резидентная часть, затем сегменты.
+     */
+    public List<List<CompressedPostings>> postingSources(int siteId, List<String> lemmas) {
+        ReadWriteLock lock = lock(siteId);
+        lock.readLock().lock();
+        try {
+            List<List<CompressedPostings>> sources = new ArrayList<>();
+            List<CompressedPostings> resident = new ArrayList<>(lemmas.size());
+            for (String lemma : lemmas) {
+                resident.add(postings(siteId, lemma));
+            }
+            sources.add(resident);
+            for (IndexSegment segment : segments.getOrDefault(siteId, Collections.emptyList())) {
+                List<CompressedPostings> onDisk = new ArrayList<>(lemmas.size());
+                for (String lemma : lemmas) {
+                    onDisk.add(segment.postings(lemma));
+                }
+                sources.add(onDisk);
+            }
+            return sources;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Позиции каждой из лемм на странице.
+     */
+    public List<int[]> positions(int siteId, int pageId, List<String> lemmas) {
+        List<int[]> positions = new ArrayList<>(lemmas.size());
+        for (int i = 0; i < lemmas.size(); i++) {
+            positions.add(new int[0]);
+        }
+        for (List<CompressedPostings> source : postingSources(siteId, lemmas)) {
+            for (int i = 0; i < lemmas.size(); i++) {
+                CompressedPostings postings = source.get(i);
+                if (postings == null) {
+                    continue;
+                }
+                CompressedPostings.Cursor cursor = postings.cursor();
+                if (cursor.advance(pageId) && cursor.pageId() == pageId) {
+                    positions.set(i, cursor.positions());
+                }
+            }
+        }
+        return positions;
+    }
+
+    public boolean isDeleted(int siteId, int pageId) {
+        Set<Integer> deleted = deletedPages.get(siteId);
+        return deleted != null && deleted.contains(pageId);
+    }
+
+    /**
+     * Номер версии содержимого сайта: увеличивается при каждом добавлении и удалении страниц.
+     */
+    public long generation(int siteId) {
+        AtomicLong generation = generations.get(siteId);
+        return generation == null ? 0 : generation.get();
+    }
+
+    public List<Integer> siteIds() {
+        return new ArrayList<>(sites.keySet());
+    }
+
+    /**
+     * Переносит резидентную часть сайта в сегмент на диске.
+     */
+    public void flush(int siteId) {
+        if (!segmentStore.isEnabled()) {
+            return;
+        }
+        ReadWriteLock lock = lock(siteId);
+        lock.writeLock().lock();
+        try {
+            Map<String, PostingList> lemmas = sites.get(siteId);
+            if (lemmas != null && !lemmas.isEmpty()) {
+                SortedMap<String, CompressedPostings> snapshot = new TreeMap<>();
+                BitSet pages = new BitSet();
+                for (Map.Entry<String, PostingList> entry : lemmas.entrySet()) {
+                    CompressedPostings postings = entry.getValue().snapshot();
+                    snapshot.put(entry.getKey(), postings);
+                    CompressedPostings.Cursor cursor = postings.cursor();
+                    while (cursor.next()) {
+                        pages.set(cursor.pageId());
+                    }
+                }
+                IndexSegment segment = segmentStore.write(siteId, snapshot, pages.stream().toArray());
+                List<IndexSegment> siteSegments = new ArrayList<>(segments.getOrDefault(siteId, Collections.emptyList()));
+                siteSegments.add(segment);
+                segments.put(siteId, Collections.unmodifiableList(siteSegments));
+                lemmas.clear();
+            }
+            List<IndexSegment> siteSegments = segments.getOrDefault(siteId, Collections.emptyList());
+            if (siteSegments.size() > segmentStore.mergeThreshold()) {
+                Set<Integer> deleted = deletedPages.getOrDefault(siteId, Collections.emptySet());
+                IndexSegment merged = segmentStore.merge(siteId, siteSegments, deleted);
+                segments.put(siteId, List.of(merged));
+                deletedPages.remove(siteId);
+                for (IndexSegment old : siteSegments) {
+                    segmentStore.delete(old);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Не удалось записать сегмент сайта {}: {}", siteId, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        long segmentCount = 0;
+        long segmentBytes = 0;
+        for (List<IndexSegment> siteSegments : segments.values()) {
+            segmentCount += siteSegments.size();
+            for (IndexSegment segment : siteSegments) {
+                segmentBytes += segment.sizeInBytes();
+            }
+        }
+        long residentLists = 0;
+        for (Map<String, PostingList> lemmas : sites.values()) {
+            residentLists += lemmas.size();
+        }
+        long deleted = 0;
+        for (Set<Integer> pages : deletedPages.values()) {
+            deleted += pages.size();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("residentLists", residentLists);
+        metrics.put("segments", segmentCount);
+        metrics.put("segmentBytes", segmentBytes);
+        metrics.put("deletedSegmentPages", deleted);
+        return metrics;
+    }
+
+    /**
+     * Открывает сегменты сайта и возвращает наибольший id страницы в них.
+     */
+    private int loadSegments(int siteId) {
+        List<IndexSegment> siteSegments;
+        try {
+            siteSegments = segmentStore.open(siteId);
+        } catch (IOException e) {
+            log.error("Сегменты сайта {} повреждены и будут перестроены из базы: {}", siteId, e.getMessage());
+            segmentStore.deleteSite(siteId);
+            return 0;
+        }
+        if (siteSegments.isEmpty()) {
+            return 0;
+        }
+        Set<Integer> existing = new HashSet<>(pageRepository.findIdsBySiteId(siteId));
+        Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+        int maxPageId = 0;
+        int pages = 0;
+        for (IndexSegment segment : siteSegments) {
+            maxPageId = Math.max(maxPageId, segment.maxPageId());
+            for (int pageId : segment.pageIds()) {
+                if (existing.contains(pageId)) {
+                    pages++;
+                } else {
+                    deleted.add(pageId);
+                }
+            }
+        }
+        segments.put(siteId, Collections.unmodifiableList(siteSegments));
+        if (!deleted.isEmpty()) {
+            deletedPages.put(siteId, deleted);
+        }
+        statistics.addPages(siteId, pages);
+        for (IndexSegment segment : siteSegments) {
+            segment.forEachTerm((lemma, entry) -> statistics.addFrequency(siteId, lemma, livePages(segment.postingsOf(entry), deleted)));
+        }
+        return maxPageId;
+    }
+
+    private static int livePages(CompressedPostings postings, Set<Integer> deleted) {
+        if (deleted.isEmpty()) {
+            return postings.size();
+        }
+        int pages = 0;
+        CompressedPostings.Cursor cursor = postings.cursor();
+        while (cursor.next()) {
+            if (!deleted.contains(cursor.pageId())) {
+                pages++;
+            }
+        }
+        return pages;
+    }
+
+    private boolean inSegments(int siteId, int pageId) {
+        for (IndexSegment segment : segments.getOrDefault(siteId, Collections.emptyList())) {
+            if (pageId <= segment.maxPageId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void advanceGeneration(int siteId) {
+        generations.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Блокировки не удаляются вместе с сайтом.
+     */
+    private ReadWriteLock lock(int siteId) {
+        return locks.computeIfAbsent(siteId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Map<String, PostingList> siteLemmas(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,212 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexWriterSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Id лемм по сайтам и ещё не записанные изменения frequency.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexWriterSettings settings;
+    private final SiteCounters siteCounters;
+
+    private final Map<Integer, Map<String, Entry>> sites = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconciler;
+
+    private final LongAdder reconciles = new LongAdder();
+    private final LongAdder reconciledRows = new LongAdder();
+    private final LongAdder insertedLemmas = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        reconciler = Executors.newSingleThreadScheduledExecutor();
+        reconciler.scheduleWithFixedDelay(this::reconcile, settings.getReconcileIntervalMillis(),
+                settings.getReconcileIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reconciler.shutdown();
+        reconcile();
+    }
+
+    /**
+     * Возвращает id лемм сайта, при необходимости создавая недостающие строки в таблице lemma.
+     */
+    public Map<String, Integer> resolveIds(int siteId, List<String> lemmas) {
+        Map<String, Entry> dictionary = siteDictionary(siteId);
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Entry entry = dictionary.computeIfAbsent(lemma, l -> new Entry());
+            if (entry.id != 0) {
+                ids.put(lemma, entry.id);
+            } else {
+                unknown.add(lemma);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return ids;
+        }
+        Collections.sort(unknown);
+        for (int from = 0; from < unknown.size(); from += settings.getBatchSize()) {
+            List<String> chunk = unknown.subList(from, Math.min(from + settings.getBatchSize(), unknown.size()));
+            List<String> missing = new ArrayList<>(chunk);
+            missing.removeAll(select(siteId, chunk, dictionary, ids));
+            if (missing.isEmpty()) {
+                continue;
+            }
+            StringBuilder insert = new StringBuilder("INSERT IGNORE INTO lemma (site_id, lemma, frequency) VALUES ");
+            Object[] insertArgs = new Object[missing.size() * 2];
+            for (int i = 0; i < missing.size(); i++) {
+                insert.append(i == 0 ? "(?, ?, 0)" : ", (?, ?, 0)");
+                insertArgs[i * 2] = siteId;
+                insertArgs[i * 2 + 1] = missing.get(i);
+            }
+            int inserted = jdbcTemplate.update(insert.toString(), insertArgs);
+            insertedLemmas.add(inserted);
+            siteCounters.lemmasAdded(siteId, inserted);
+            if (select(siteId, missing, dictionary, ids).size() < missing.size()) {
+                throw new IllegalStateException("Не удалось создать строки лемм сайта " + siteId);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Находит id существующих строк лемм и возвращает найденные леммы.
+     */
+    private Set<String> select(int siteId, List<String> lemmas, Map<String, Entry> dictionary, Map<String, Integer> ids) {
+        StringBuilder sql = new StringBuilder("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (");
+        Object[] args = new Object[lemmas.size() + 1];
+        args[0] = siteId;
+        for (int i = 0; i < lemmas.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args[i + 1] = lemmas.get(i);
+        }
+        sql.append(")");
+        Set<String> found = new HashSet<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            String lemma = rs.getString("lemma");
+            int id = rs.getInt("id");
+            dictionary.computeIfAbsent(lemma, l -> new Entry()).id = id;
+            ids.put(lemma, id);
+            found.add(lemma);
+        }, args);
+        return found;
+    }
+
+    public void add(int siteId, String lemma, int delta) {
+        siteDictionary(siteId).computeIfAbsent(lemma, l -> new Entry()).delta.add(delta);
+    }
+
+    /**
+     * Забывает леммы сайта. Синхронизирован с reconcile, чтобы тот не вернул в базу frequency удаляемого сайта.
+     */
+    public synchronized void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    /**
+     * Переносит накопленные изменения frequency в таблицу lemma.
+     */
+    public synchronized void reconcile() {
+        try {
+            for (Map.Entry<Integer, Map<String, Entry>> site : sites.entrySet()) {
+                reconcileSite(site.getKey(), site.getValue());
+            }
+            reconciles.increment();
+        } catch (RuntimeException e) {
+            log.error("Не удалось перенести frequency лемм в базу: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        long entries = 0;
+        long pendingDeltas = 0;
+        for (Map<String, Entry> dictionary : sites.values()) {
+            entries += dictionary.size();
+            for (Entry entry : dictionary.values()) {
+                if (entry.delta.sum() != 0) {
+                    pendingDeltas++;
+                }
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sites", sites.size());
+        metrics.put("entries", entries);
+        metrics.put("pendingDeltas", pendingDeltas);
+        metrics.put("insertedLemmas", insertedLemmas.sum());
+        metrics.put("reconciles", reconciles.sum());
+        metrics.put("reconciledRows", reconciledRows.sum());
+        return metrics;
+    }
+
+    private void reconcileSite(int siteId, Map<String, Entry> dictionary) {
+        List<String> lemmas = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : dictionary.entrySet()) {
+            long delta = entry.getValue().delta.sumThenReset();
+            if (delta != 0) {
+                lemmas.add(entry.getKey());
+                deltas.add(delta);
+            }
+        }
+        for (int from = 0; from < lemmas.size(); from += settings.getBatchSize()) {
+            int to = Math.min(from + settings.getBatchSize(), lemmas.size());
+            StringBuilder sql = new StringBuilder("INSERT INTO lemma (site_id, lemma, frequency) VALUES ");
+            Object[] args = new Object[(to - from) * 3];
+            for (int i = from; i < to; i++) {
+                int arg = (i - from) * 3;
+                sql.append(i == from ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args[arg] = siteId;
+                args[arg + 1] = lemmas.get(i);
+                args[arg + 2] = deltas.get(i);
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)");
+            try {
+                jdbcTemplate.update(sql.toString(), args);
+                reconciledRows.add(to - from);
+            } catch (RuntimeException e) {
+                if (sites.get(siteId) == dictionary) {
+                    for (int i = from; i < lemmas.size(); i++) {
+                        dictionary.computeIfAbsent(lemmas.get(i), l -> new Entry()).delta.add(deltas.get(i));
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private Map<String, Entry> siteDictionary(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>());
+    }
+
+    private static final class Entry {
+        private volatile int id;
+        private final LongAdder delta = new LongAdder();
+    }
+}
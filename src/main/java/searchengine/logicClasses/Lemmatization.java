@@ -1,42 +1,99 @@
 package searchengine.logicClasses;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
 
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
+@Component
+@RequiredArgsConstructor
 public class Lemmatization {
-    public static HashMap<String, Integer> lemmatization(String text) throws IOException {
+    private final MorphologyAnalyzer morphologyAnalyzer;
 
-        LuceneMorphology russianMorphology = new RussianLuceneMorphology();
-        HashMap<String, Integer> map = new HashMap<>();
+    private final LongAdder texts = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
 
-        String newText = text.replaceAll("[^\\sа-яА-Я]", "");
-        newText = newText.replaceAll("\\s+", " ").trim();
+    /**
+     * Считает, сколько раз каждая лемма встречается в тексте.
+     */
+    public StringIntMap lemmatization(String text) {
+        long startTime = System.nanoTime();
+        StringIntMap words = new StringIntMap(256);
+        Tokenizer tokenizer = new Tokenizer(text);
+        while (tokenizer.next()) {
+            words.addTo(tokenizer.buffer(), tokenizer.length(), 1);
+        }
 
-        String[] str = newText.split(" ");
-        for (String s : str) {
-            if (s.isEmpty()) {
-                continue;
+        StringIntMap map = new StringIntMap(words.size());
+        words.forEach((word, count) -> {
+            for (String lemma : morphologyAnalyzer.normalForms(word)) {
+                map.addTo(lemma, count);
             }
+        });
 
-            List<String> wordBaseForms = russianMorphology.getNormalForms(s.toLowerCase());
+        texts.increment();
+        chars.add(text.length());
+        nanos.add(System.nanoTime() - startTime);
+        return map;
+    }
 
-            for (String word : wordBaseForms) {
-                String wordInfo = String.valueOf(russianMorphology.getMorphInfo(word));
-                if (wordInfo.contains("СОЮЗ") || wordInfo.contains("МЕЖД") ||
-                        wordInfo.contains("МС") || wordInfo.contains("ПРЕДЛ") || wordInfo.contains("ЧАСТ")) {
-                    continue;
-                }
-                if (map.containsKey(word)) {
-                    map.put(word, map.get(word) + 1);
-                } else {
-                    map.put(word, 1);
+    /**
+     * Леммы, позиции слов и их места в тексте для сниппетов.
+     */
+    public PageText analyze(String text) {
+        long startTime = System.nanoTime();
+        StringIntMap wordIds = new StringIntMap(256);
+        int[] tokenStarts = new int[64];
+        int[] tokenWords = new int[64];
+        int tokens = 0;
+        Tokenizer tokenizer = new Tokenizer(text);
+        while (tokenizer.next()) {
+            if (tokens == tokenStarts.length) {
+                tokenStarts = Arrays.copyOf(tokenStarts, tokens * 2);
+                tokenWords = Arrays.copyOf(tokenWords, tokens * 2);
+            }
+            tokenStarts[tokens] = tokenizer.start();
+            tokenWords[tokens] = wordIds.putIfAbsent(tokenizer.buffer(), tokenizer.length(), wordIds.size());
+            tokens++;
+        }
+
+        String[][] wordLemmas = new String[wordIds.size()][];
+        wordIds.forEach((word, id) -> wordLemmas[id] = new LinkedHashSet<>(morphologyAnalyzer.normalForms(word)).toArray(new String[0]));
+        Map<String, int[]> lemmaTokens = new HashMap<>();
+        Map<String, Integer> lemmaSizes = new HashMap<>();
+        for (int token = 0; token < tokens; token++) {
+            for (String lemma : wordLemmas[tokenWords[token]]) {
+                int size = lemmaSizes.merge(lemma, 1, Integer::sum);
+                int[] positions = lemmaTokens.get(lemma);
+                if (positions == null || positions.length < size) {
+                    positions = positions == null ? new int[4] : Arrays.copyOf(positions, positions.length * 2);
+                    lemmaTokens.put(lemma, positions);
                 }
+                positions[size - 1] = token;
             }
         }
-        return map;
+        lemmaTokens.replaceAll((lemma, positions) -> Arrays.copyOf(positions, lemmaSizes.get(lemma)));
+
+        texts.increment();
+        chars.add(text.length());
+        nanos.add(System.nanoTime() - startTime);
+        return new PageText(text, Arrays.copyOf(tokenStarts, tokens), lemmaTokens);
+    }
+
+    public Map<String, Object> metrics() {
+        long charCount = chars.sum();
+        long nanoCount = nanos.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("texts", texts.sum());
+        metrics.put("chars", charCount);
+        metrics.put("millis", nanoCount / 1_000_000);
+        metrics.put("megabytesPerSecond", nanoCount == 0 ? 0 : charCount * 2 * 1000.0 / nanoCount);
+        return metrics;
     }
 }
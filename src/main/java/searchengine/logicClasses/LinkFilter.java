@@ -0,0 +1,116 @@
+package searchengine.logicClasses;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.util.Locale;
+
+/**
+ * Нужно ли обходить ссылку по правилам indexing-settings.
+ */
+@Component
+public class LinkFilter {
+    private final Trie extensions = new Trie();
+    private final Trie pathPrefixes = new Trie();
+
+    public LinkFilter(SitesList settings) {
+        for (String extension : settings.getExcludedExtensions()) {
+            String rule = extension.toLowerCase(Locale.ROOT);
+            extensions.add(rule.startsWith(".") ? rule.substring(1) : rule);
+        }
+        for (String prefix : settings.getExcludedPathPrefixes()) {
+            pathPrefixes.add(prefix.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Адрес должен быть результатом UrlNormalizer.normalize, siteUrl - адрес сайта из настроек.
+     */
+    public boolean accept(String siteUrl, String url) {
+        if (url == null) {
+            return false;
+        }
+        int siteLength = siteUrl.endsWith("/") ? siteUrl.length() - 1 : siteUrl.length();
+        if (!url.regionMatches(true, 0, siteUrl, 0, siteLength)
+                || url.length() <= siteLength || url.charAt(siteLength) != '/') {
+            return false;
+        }
+        int pathEnd = url.indexOf('?', siteLength);
+        if (pathEnd < 0) {
+            pathEnd = url.length();
+        }
+        if (pathPrefixes.matchesPrefix(url, siteLength, pathEnd)) {
+            return false;
+        }
+        int segmentStart = url.lastIndexOf('/', pathEnd - 1) + 1;
+        int dot = url.lastIndexOf('.', pathEnd - 1);
+        return dot < segmentStart || !extensions.matchesExactly(url, dot + 1, pathEnd);
+    }
+
+    /**
+     * Префиксное дерево над символами в нижнем регистре.
+     */
+    private static final class Trie {
+        private final Node root = new Node();
+
+        void add(String rule) {
+            if (rule.isEmpty()) {
+                return;
+            }
+            Node node = root;
+            for (int i = 0; i < rule.length(); i++) {
+                node = node.child(rule.charAt(i), true);
+            }
+            node.terminal = true;
+        }
+
+        boolean matchesExactly(String text, int from, int to) {
+            Node node = root;
+            for (int i = from; i < to && node != null; i++) {
+                node = node.child(Character.toLowerCase(text.charAt(i)), false);
+            }
+            return node != null && node.terminal;
+        }
+
+        boolean matchesPrefix(String text, int from, int to) {
+            Node node = root;
+            for (int i = from; i < to; i++) {
+                node = node.child(Character.toLowerCase(text.charAt(i)), false);
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node child(char label, boolean create) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[labels.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, labels.length);
+            System.arraycopy(children, 0, grownChildren, 0, labels.length);
+            Node node = new Node();
+            grownLabels[labels.length] = label;
+            grownChildren[labels.length] = node;
+            labels = grownLabels;
+            children = grownChildren;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package searchengine.logicClasses;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.stereotype.Component;
+import searchengine.config.MorphologySettings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общий морфологический анализатор с кэшем нормальных форм.
+ */
+@Component
+public class MorphologyAnalyzer {
+    private static final String[] SERVICE_PARTS_OF_SPEECH = {"СОЮЗ", "МЕЖД", "МС", "ПРЕДЛ", "ЧАСТ"};
+
+    private final LuceneMorphology russianMorphology;
+    private final int generationSize;
+    private volatile Map<String, CachedForms> currentGeneration = new ConcurrentHashMap<>();
+    private volatile Map<String, CachedForms> previousGeneration = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder normalFormsCalls = new LongAdder();
+    private final LongAdder morphInfoCalls = new LongAdder();
+    private final LongAdder savedMorphInfoCalls = new LongAdder();
+
+    public MorphologyAnalyzer(MorphologySettings settings) throws IOException {
+        this.russianMorphology = new RussianLuceneMorphology();
+        this.generationSize = Math.max(settings.getCacheSize() / 2, 1);
+    }
+
+    /**
+     * Нормальные формы слова в нижнем регистре, кроме союзов, междометий, местоимений, предлогов и частиц.
+     */
+    public List<String> normalForms(String word) {
+        CachedForms cached = currentGeneration.get(word);
+        if (cached == null) {
+            cached = previousGeneration.get(word);
+            if (cached != null) {
+                store(word, cached);
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            savedMorphInfoCalls.add(cached.morphInfoCalls);
+            return cached.forms;
+        }
+        misses.increment();
+        cached = analyze(word);
+        store(word, cached);
+        return cached.forms;
+    }
+
+    public Map<String, Object> metrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cacheSize", currentGeneration.size() + previousGeneration.size());
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("normalFormsCalls", normalFormsCalls.sum());
+        metrics.put("morphInfoCalls", morphInfoCalls.sum());
+        metrics.put("savedNormalFormsCalls", hitCount);
+        metrics.put("savedMorphInfoCalls", savedMorphInfoCalls.sum());
+        return metrics;
+    }
+
+    private CachedForms analyze(String word) {
+        if (!russianMorphology.checkString(word)) {
+            return new CachedForms(Collections.emptyList(), 0);
+        }
+        normalFormsCalls.increment();
+        List<String> wordBaseForms = russianMorphology.getNormalForms(word);
+        List<String> forms = new ArrayList<>(wordBaseForms.size());
+        for (String form : wordBaseForms) {
+            morphInfoCalls.increment();
+            String wordInfo = String.valueOf(russianMorphology.getMorphInfo(form));
+            if (!isServicePartOfSpeech(wordInfo)) {
+                forms.add(form);
+            }
+        }
+        return new CachedForms(Collections.unmodifiableList(forms), wordBaseForms.size());
+    }
+
+    private void store(String word, CachedForms forms) {
+        Map<String, CachedForms> generation = currentGeneration;
+        generation.put(word, forms);
+        if (generation.size() > generationSize) {
+            synchronized (this) {
+                if (currentGeneration == generation) {
+                    previousGeneration = generation;
+                    currentGeneration = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+    private static boolean isServicePartOfSpeech(String wordInfo) {
+        for (String partOfSpeech : SERVICE_PARTS_OF_SPEECH) {
+            if (wordInfo.contains(partOfSpeech)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class CachedForms {
+        private final List<String> forms;
+        private final int morphInfoCalls;
+
+        private CachedForms(List<String> forms, int morphInfoCalls) {
+            this.forms = forms;
+            this.morphInfoCalls = morphInfoCalls;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.dto.index.PageTextRow;
+import searchengine.repository.PageContentRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Сжатый HTML и подготовленный текст страниц в таблице page_content.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+    private final PageContentRepository pageContentRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * Один INSERT, без SELECT от save() репозитория.
+     */
+    public void save(int pageId, String html) {
+        byte[] raw = html.getBytes(StandardCharsets.UTF_8);
+        byte[] data = compress(raw);
+        jdbcTemplate.update("INSERT INTO page_content (page_id, raw_length, data, text_length) VALUES (?, ?, ?, 0) " +
+                "ON DUPLICATE KEY UPDATE raw_length = VALUES(raw_length), data = VALUES(data), " +
+                "text_length = 0, text_data = NULL, token_offsets = NULL", pageId, raw.length, data);
+        rawBytes.add(raw.length);
+        storedBytes.add(data.length);
+    }
+
+    /**
+     * HTML страницы или пустая строка, если содержимого нет.
+     */
+    public String load(int pageId) {
+        loads.increment();
+        return pageContentRepository.findById(pageId)
+                .map(content -> new String(decompress(content.getData(), content.getRawLength()), StandardCharsets.UTF_8))
+                .orElse("");
+    }
+
+    /**
+     * Сохраняет видимый текст страницы и начала его слов рядом с HTML. Строка page_content уже должна существовать.
+     */
+    public void saveText(int pageId, PageText pageText) {
+        byte[] raw = pageText.text().getBytes(StandardCharsets.UTF_8);
+        jdbcTemplate.update("UPDATE page_content SET text_length = ?, text_data = ?, token_offsets = ? WHERE page_id = ?",
+                raw.length, compress(raw), pageText.encodeTokenOffsets(), pageId);
+    }
+
+    /**
+     * Подготовленные тексты страниц одним запросом.
+     */
+    public Map<Integer, PageText> loadTexts(Collection<Integer> pageIds) {
+        Map<Integer, PageText> texts = new HashMap<>();
+        if (pageIds.isEmpty()) {
+            return texts;
+        }
+        for (PageTextRow row : pageContentRepository.findTextsByPageIds(pageIds)) {
+            loads.increment();
+            Reader text = new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(row.getTextData())), StandardCharsets.UTF_8);
+            texts.put(row.getPageId(), PageText.stored(row.getTokenOffsets(), text));
+        }
+        return texts;
+    }
+
+    public void delete(int pageId) {
+        jdbcTemplate.update("DELETE FROM page_content WHERE page_id = ?", pageId);
+    }
+
+    public Map<String, Object> metrics() {
+        long raw = rawBytes.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("rawBytesWritten", raw);
+        metrics.put("storedBytesWritten", storedBytes.sum());
+        metrics.put("compressionRatio", raw == 0 ? 0 : (double) storedBytes.sum() / raw);
+        metrics.put("loads", loads.sum());
+        return metrics;
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(raw.length / 4, 64));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждено содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
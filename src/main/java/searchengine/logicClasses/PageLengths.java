@@ -0,0 +1,135 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.dto.index.PageLength;
+import searchengine.repository.PageRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Длины страниц в словах для BM25.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageLengths {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final PageRepository pageRepository;
+
+    private final Map<Integer, SiteLengths> sites = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        for (PageLength page : pageRepository.findPageLengths()) {
+            set(page.getSiteId(), page.getPageId(), page.getWordCount());
+        }
+    }
+
+    public void set(int siteId, int pageId, int length) {
+        sites.computeIfAbsent(siteId, id -> new SiteLengths()).set(pageId, length);
+    }
+
+    public void remove(int siteId, int pageId) {
+        SiteLengths site = sites.get(siteId);
+        if (site != null) {
+            site.remove(pageId);
+        }
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    /**
+     * Длина страницы в словах или 0, если она неизвестна (страница проиндексирована до появления word_count).
+     */
+    public int length(int siteId, int pageId) {
+        SiteLengths site = sites.get(siteId);
+        return site == null ? 0 : site.length(pageId);
+    }
+
+    public double averageLength(int siteId) {
+        SiteLengths site = sites.get(siteId);
+        return site == null || site.pages == 0 ? 0 : (double) site.totalLength / site.pages;
+    }
+
+    private static final class SiteLengths {
+        private volatile Window window = new Window(0, new int[0]);
+        private volatile long totalLength;
+        private volatile int pages;
+
+        private int length(int pageId) {
+            Window current = window;
+            int index = pageId - current.base;
+            return index >= 0 && index < current.lengths.length ? current.lengths[index] : 0;
+        }
+
+        private synchronized void set(int pageId, int length) {
+            Window current = window;
+            if (current.lengths.length == 0) {
+                current = new Window(pageId, new int[INITIAL_CAPACITY]);
+            } else if (pageId < current.base) {
+                int end = current.base + current.lengths.length;
+                int[] lengths = new int[end - pageId];
+                System.arraycopy(current.lengths, 0, lengths, current.base - pageId, current.lengths.length);
+                current = new Window(pageId, lengths);
+            } else if (pageId - current.base >= current.lengths.length) {
+                int size = Math.max(pageId - current.base + 1, current.lengths.length * 2);
+                current = new Window(current.base, Arrays.copyOf(current.lengths, size));
+            }
+            int index = pageId - current.base;
+            int previous = current.lengths[index];
+            current.lengths[index] = length;
+            window = current;
+            totalLength += length - previous;
+            if (previous == 0 && length != 0) {
+                pages++;
+            } else if (previous != 0 && length == 0) {
+                pages--;
+            }
+        }
+
+        private synchronized void remove(int pageId) {
+            Window current = window;
+            int index = pageId - current.base;
+            if (index < 0 || index >= current.lengths.length || current.lengths[index] == 0) {
+                return;
+            }
+            totalLength -= current.lengths[index];
+            pages--;
+            current.lengths[index] = 0;
+            if (index == 0) {
+                trimHead(current);
+            }
+        }
+
+        /**
+         * Отрезает нулевое начало массива, когда оно занимает больше половины.
+         */
+        private void trimHead(Window current) {
+            int first = 0;
+            while (first < current.lengths.length && current.lengths[first] == 0) {
+                first++;
+            }
+            if (first == current.lengths.length) {
+                window = new Window(0, new int[0]);
+            } else if (first > current.lengths.length / 2) {
+                window = new Window(current.base + first, Arrays.copyOfRange(current.lengths, first, current.lengths.length));
+            }
+        }
+    }
+
+    private static final class Window {
+        private final int base;
+        private final int[] lengths;
+
+        private Window(int base, int[] lengths) {
+            this.base = base;
+            this.lengths = lengths;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package searchengine.logicClasses;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Видимый текст страницы с началами слов и позициями лемм.
+ */
+public final class PageText {
+    private static final int[] NO_TOKENS = new int[0];
+    private static final int READ_CHUNK = 4096;
+
+    private final CharSequence text;
+    private int[] tokenStarts;
+    private final int tokenCount;
+    private final Map<String, int[]> lemmaTokens;
+    private ByteBuffer offsets;
+    private int decodedTokens;
+    private Reader reader;
+
+    public PageText(String text, int[] tokenStarts, Map<String, int[]> lemmaTokens) {
+        this.text = text;
+        this.tokenStarts = tokenStarts;
+        this.tokenCount = tokenStarts.length;
+        this.lemmaTokens = lemmaTokens;
+        this.decodedTokens = tokenStarts.length;
+    }
+
+    private PageText(ByteBuffer offsets, Reader reader) {
+        this.text = new StringBuilder();
+        this.tokenCount = readVarint(offsets);
+        this.tokenStarts = new int[Math.min(tokenCount, 64)];
+        this.lemmaTokens = Collections.emptyMap();
+        this.offsets = offsets;
+        this.reader = reader;
+    }
+
+    public String text() {
+        readText(Integer.MAX_VALUE);
+        return text.toString();
+    }
+
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    public int tokenStart(int token) {
+        if (token >= decodedTokens) {
+            decodeTokens(token + 1);
+        }
+        return tokenStarts[token];
+    }
+
+    /**
+     * Конец слова в тексте: слово - непрерывная последовательность кириллических букв, как в Tokenizer.
+     */
+    public int tokenEnd(int token) {
+        int end = tokenStart(token);
+        while (hasChar(end) && Tokenizer.toLowerCyrillic(text.charAt(end)) != 0) {
+            end++;
+        }
+        return end;
+    }
+
+    public char charAt(int index) {
+        hasChar(index);
+        return text.charAt(index);
+    }
+
+    /**
+     * Отсортированные номера слов, нормальная форма которых - lemma.
+     */
+    public int[] tokensOf(String lemma) {
+        return lemmaTokens.getOrDefault(lemma, NO_TOKENS);
+    }
+
+    public Map<String, int[]> lemmaTokens() {
+        return lemmaTokens;
+    }
+
+    /**
+     * Сколько раз каждая лемма встречается в тексте - rank для индекса.
+     */
+    public StringIntMap lemmaCounts() {
+        StringIntMap counts = new StringIntMap(lemmaTokens.size());
+        lemmaTokens.forEach((lemma, tokens) -> counts.addTo(lemma, tokens.length));
+        return counts;
+    }
+
+    /**
+     * Начала слов без самого текста: число слов и varint-разности начал. Позиции лемм хранятся в индексе.
+     */
+    public byte[] encodeTokenOffsets() {
+        decodeTokens(tokenCount);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tokenCount * 2 + 5);
+        writeVarint(out, tokenCount);
+        writeDeltas(out, tokenStarts);
+        return out.toByteArray();
+    }
+
+    /**
+     * Текст из PageContentStore, читается лениво.
+     */
+    public static PageText stored(byte[] tokenOffsets, Reader text) {
+        return new PageText(ByteBuffer.wrap(tokenOffsets), text);
+    }
+
+    private void decodeTokens(int count) {
+        if (count > tokenStarts.length) {
+            tokenStarts = Arrays.copyOf(tokenStarts, Math.min(tokenCount, Math.max(count, tokenStarts.length * 2)));
+        }
+        int previous = decodedTokens == 0 ? 0 : tokenStarts[decodedTokens - 1];
+        for (; decodedTokens < count; decodedTokens++) {
+            previous += readVarint(offsets);
+            tokenStarts[decodedTokens] = previous;
+        }
+    }
+
+    private boolean hasChar(int index) {
+        if (index >= text.length()) {
+            readText(index + 1);
+        }
+        return index < text.length();
+    }
+
+    private void readText(int length) {
+        if (reader == null) {
+            return;
+        }
+        StringBuilder builder = (StringBuilder) text;
+        char[] buffer = new char[READ_CHUNK];
+        try {
+            while (builder.length() < length) {
+                int read = reader.read(buffer);
+                if (read < 0) {
+                    reader.close();
+                    reader = null;
+                    return;
+                }
+                builder.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Повреждён текст страницы", e);
+        }
+    }
+
+    private static void writeDeltas(ByteArrayOutputStream out, int[] values) {
+        int previous = 0;
+        for (int value : values) {
+            writeVarint(out, value - previous);
+            previous = value;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
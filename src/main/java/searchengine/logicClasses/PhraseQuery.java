@@ -0,0 +1,137 @@
+package searchengine.logicClasses;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Фраза из запроса в кавычках.
+ */
+public final class PhraseQuery {
+    private final String[][] wordLemmas;
+    private final int[] offsets;
+
+    private PhraseQuery(String[][] wordLemmas, int[] offsets) {
+        this.wordLemmas = wordLemmas;
+        this.offsets = offsets;
+    }
+
+    public static PhraseQuery of(PageText phrase) {
+        List<List<String>> tokenLemmas = new ArrayList<>();
+        for (int token = 0; token < phrase.tokenCount(); token++) {
+            tokenLemmas.add(new ArrayList<>(2));
+        }
+        for (Map.Entry<String, int[]> entry : phrase.lemmaTokens().entrySet()) {
+            for (int token : entry.getValue()) {
+                tokenLemmas.get(token).add(entry.getKey());
+            }
+        }
+        List<String[]> words = new ArrayList<>();
+        int[] offsets = new int[phrase.tokenCount()];
+        int first = -1;
+        for (int token = 0; token < tokenLemmas.size(); token++) {
+            if (tokenLemmas.get(token).isEmpty()) {
+                continue;
+            }
+            first = first < 0 ? token : first;
+            offsets[words.size()] = token - first;
+            words.add(tokenLemmas.get(token).toArray(new String[0]));
+        }
+        return new PhraseQuery(words.toArray(new String[0][]), Arrays.copyOf(offsets, words.size()));
+    }
+
+    /**
+     * Фразы из одного слова ничего не добавляют к обычному пересечению лемм.
+     */
+    public boolean isPositional() {
+        return wordLemmas.length > 1;
+    }
+
+    /**
+     * Каноническая запись фразы для ключа кэша результатов.
+     */
+    public String key() {
+        StringBuilder key = new StringBuilder("\"");
+        for (int word = 0; word < wordLemmas.length; word++) {
+            key.append(offsets[word]).append(':').append(String.join("/", wordLemmas[word])).append(' ');
+        }
+        return key.append('"').toString();
+    }
+
+    public List<String> lemmas() {
+        List<String> lemmas = new ArrayList<>();
+        for (String[] word : wordLemmas) {
+            lemmas.addAll(Arrays.asList(word));
+        }
+        return lemmas;
+    }
+
+    /**
+     * positions - отсортированные позиции леммы на странице.
+     */
+    public boolean matches(Function<String, int[]> positions) {
+        int[][] words = new int[wordLemmas.length][];
+        for (int word = 0; word < wordLemmas.length; word++) {
+            words[word] = wordPositions(wordLemmas[word], positions);
+            if (words[word].length == 0) {
+                return false;
+            }
+        }
+        for (int start : words[0]) {
+            boolean found = true;
+            for (int word = 1; word < words.length && found; word++) {
+                found = Arrays.binarySearch(words[word], start + offsets[word]) >= 0;
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Наименьшее окно в словах, содержащее хотя бы по одному вхождению каждого списка, или -1, если какой-то список пуст.
+     */
+    public static int minimalSpan(List<int[]> termPositions) {
+        int terms = termPositions.size();
+        int[] cursor = new int[terms];
+        for (int[] positions : termPositions) {
+            if (positions.length == 0) {
+                return -1;
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = 0;
+            int max = Integer.MIN_VALUE;
+            for (int term = 0; term < terms; term++) {
+                int position = termPositions.get(term)[cursor[term]];
+                if (position < termPositions.get(min)[cursor[min]]) {
+                    min = term;
+                }
+                max = Math.max(max, position);
+            }
+            best = Math.min(best, max - termPositions.get(min)[cursor[min]] + 1);
+            if (++cursor[min] == termPositions.get(min).length) {
+                return best;
+            }
+        }
+    }
+
+    private static int[] wordPositions(String[] lemmas, Function<String, int[]> positions) {
+        if (lemmas.length == 1) {
+            return positions.apply(lemmas[0]);
+        }
+        int[] merged = new int[0];
+        for (String lemma : lemmas) {
+            int[] lemmaPositions = positions.apply(lemma);
+            int[] union = Arrays.copyOf(merged, merged.length + lemmaPositions.length);
+            System.arraycopy(lemmaPositions, 0, union, merged.length, lemmaPositions.length);
+            merged = union;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+}
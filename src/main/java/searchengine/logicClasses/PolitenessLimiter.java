@@ -0,0 +1,30 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отдельный TokenBucket на каждый хост, чтобы все потоки обхода вместе не обращались к сайту чаще заданного.
+ */
+@Component
+@RequiredArgsConstructor
+public class PolitenessLimiter {
+    private final CrawlerSettings settings;
+    private final Map<String, TokenBucket> hosts = new ConcurrentHashMap<>();
+
+    public void acquire(String url) throws InterruptedException {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        hosts.computeIfAbsent(host == null ? "" : host,
+                h -> new TokenBucket(settings.getPolitenessBurst(), settings.getPolitenessDelayMillis())).acquire();
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.logicClasses;
+
+import java.util.Arrays;
+
+/**
+ * Отсортированный по id страницы список вхождений леммы (pageId, rank, позиции) на одном сайте.
+ */
+public class PostingList {
+    private int[] pageIds = new int[4];
+    private float[] ranks = new float[4];
+    private byte[][] positions = new byte[4][];
+    private int size;
+    private volatile CompressedPostings snapshot;
+
+    public synchronized void add(int pageId, float rank, byte[] pagePositions) {
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position >= 0) {
+            ranks[position] = rank;
+            positions[position] = pagePositions;
+        } else {
+            position = -position - 1;
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(pageIds, position, pageIds, position + 1, size - position);
+            System.arraycopy(ranks, position, ranks, position + 1, size - position);
+            System.arraycopy(positions, position, positions, position + 1, size - position);
+            pageIds[position] = pageId;
+            ranks[position] = rank;
+            positions[position] = pagePositions;
+            size++;
+        }
+        snapshot = null;
+    }
+
+    public synchronized boolean remove(int pageId) {
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(pageIds, position + 1, pageIds, position, size - position - 1);
+        System.arraycopy(ranks, position + 1, ranks, position, size - position - 1);
+        System.arraycopy(positions, position + 1, positions, position, size - position - 1);
+        size--;
+        positions[size] = null;
+        snapshot = null;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public CompressedPostings snapshot() {
+        CompressedPostings current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = CompressedPostings.encode(pageIds, ranks, positions, size);
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,166 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU-кэш ранжированных результатов поиска.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryResultCache {
+    private final SearchSettings settings;
+    private final InvertedIndex invertedIndex;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > settings.getResultCacheSize()) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public static String key(String site, Collection<String> lemmas, List<PhraseQuery> phrases) {
+        StringBuilder key = new StringBuilder(site).append('|').append(String.join(" ", new TreeSet<>(lemmas)));
+        for (PhraseQuery phrase : phrases) {
+            key.append('|').append(phrase.key());
+        }
+        return key.toString();
+    }
+
+    public boolean isEnabled() {
+        return settings.getResultCacheSize() > 0;
+    }
+
+    /**
+     * Поколения сайтов снимаются до начала поиска: изменение, случившееся во время поиска, сделает запись устаревшей.
+     */
+    public long[] generations(List<Integer> siteIds) {
+        long[] generations = new long[siteIds.size()];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = invertedIndex.generation(siteIds.get(i));
+        }
+        return generations;
+    }
+
+    /**
+     * Запись, пригодная для выдачи первых depth результатов по сайтам siteIds, или null.
+     */
+    public Entry get(String key, List<Integer> siteIds, int depth) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        boolean outdated = false;
+        if (System.currentTimeMillis() > entry.expiresAt) {
+            expirations.increment();
+            outdated = true;
+        } else if (!Arrays.equals(entry.siteIds, toArray(siteIds))
+                || !Arrays.equals(entry.generations, generations(siteIds))) {
+            invalidations.increment();
+            outdated = true;
+        }
+        if (outdated) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            misses.increment();
+            return null;
+        }
+        if (!entry.covers(depth)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Неполный результат (какой-то сайт не ответил вовремя) возвращается, но не запоминается.
+     */
+    public Entry put(String key, List<Integer> siteIds, long[] generations, TopKCollector collector, int depth, boolean complete) {
+        Entry entry = new Entry(collector.drain(), collector.totalHits(), depth, toArray(siteIds), generations,
+                System.currentTimeMillis() + settings.getResultCacheTtlSeconds() * 1000L);
+        if (isEnabled() && complete) {
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    public Map<String, Object> metrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("evictions", evictions.sum());
+        metrics.put("expirations", expirations.sum());
+        metrics.put("invalidations", invalidations.sum());
+        return metrics;
+    }
+
+    private static int[] toArray(List<Integer> siteIds) {
+        return siteIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static final class Entry {
+        private final TopKCollector.Result ranked;
+        private final int totalHits;
+        private final int depth;
+        private final int[] siteIds;
+        private final long[] generations;
+        private final long expiresAt;
+
+        private Entry(TopKCollector.Result ranked, int totalHits, int depth, int[] siteIds, long[] generations, long expiresAt) {
+            this.ranked = ranked;
+            this.totalHits = totalHits;
+            this.depth = depth;
+            this.siteIds = siteIds;
+            this.generations = generations;
+            this.expiresAt = expiresAt;
+        }
+
+        public TopKCollector.Result ranked() {
+            return ranked;
+        }
+
+        public int totalHits() {
+            return totalHits;
+        }
+
+        private boolean covers(int requested) {
+            return requested <= depth || ranked.size() == totalHits;
+        }
+    }
+}
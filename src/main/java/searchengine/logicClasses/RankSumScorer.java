@@ -0,0 +1,23 @@
+package searchengine.logicClasses;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Исходная оценка: сумма rank (числа вхождений) лемм запроса на странице.
+ */
+@Component("rank-sum")
+public class RankSumScorer implements Scorer {
+
+    @Override
+    public SiteScorer forSite(int siteId, List<String> lemmas) {
+        return match -> {
+            float relevance = 0;
+            for (int term = 0; term < match.terms(); term++) {
+                relevance = relevance + match.rank(term);
+            }
+            return relevance;
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Изменения схемы, которые не делает ddl-auto: update.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class SchemaMigrations {
+    private static final String LEMMA_DUPLICATES = "(SELECT site_id, lemma, MIN(id) AS keep_id FROM lemma " +
+            "GROUP BY site_id, lemma HAVING COUNT(*) > 1)";
+    private static final int PAGE_CONTENT_BATCH = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore contentStore;
+
+    @PostConstruct
+    public void migrate() {
+        migrateLemmaKey();
+        migratePageContent();
+    }
+
+    /**
+     * Бинарная collation lemma.lemma и уникальный ключ (site_id, lemma).
+     */
+    private void migrateLemmaKey() {
+        if (isLemmaBinary() && hasLemmaKey()) {
+            return;
+        }
+        log.warn("Таблица lemma без бинарной collation или уникального ключа (site_id, lemma), выполняется миграция");
+        jdbcTemplate.execute("ALTER TABLE lemma MODIFY lemma VARCHAR(255) COLLATE utf8mb4_bin");
+        int moved = jdbcTemplate.update("UPDATE `index` i JOIN lemma l ON l.id = i.lemma_id " +
+                "JOIN " + LEMMA_DUPLICATES + " d ON d.site_id = l.site_id AND d.lemma = l.lemma " +
+                "SET i.lemma_id = d.keep_id WHERE l.id <> d.keep_id");
+        int mergedIndex = jdbcTemplate.update("DELETE i FROM `index` i JOIN `index` k " +
+                "ON k.page_id = i.page_id AND k.lemma_id = i.lemma_id AND k.id < i.id " +
+                "JOIN " + LEMMA_DUPLICATES + " d ON d.keep_id = i.lemma_id");
+        jdbcTemplate.update("UPDATE lemma l JOIN " + LEMMA_DUPLICATES + " d ON d.keep_id = l.id " +
+                "SET l.frequency = (SELECT COUNT(*) FROM `index` i WHERE i.lemma_id = l.id)");
+        int mergedLemmas = jdbcTemplate.update("DELETE l FROM lemma l JOIN " + LEMMA_DUPLICATES + " d " +
+                "ON d.site_id = l.site_id AND d.lemma = l.lemma WHERE l.id <> d.keep_id");
+        if (!hasLemmaKey()) {
+            jdbcTemplate.execute("ALTER TABLE lemma ADD UNIQUE KEY uk_lemma_site_lemma (site_id, lemma)");
+        }
+        if (!isLemmaBinary() || !hasLemmaKey()) {
+            throw new IllegalStateException("Не удалось добавить уникальный ключ (site_id, lemma) в таблицу lemma");
+        }
+        log.warn("Миграция lemma завершена: удалено {} дубликатов лемм, перенесено {} строк index, слито {}",
+                mergedLemmas, moved, mergedIndex);
+    }
+
+    /**
+     * HTML из старой колонки page.content переносится в page_content, после чего колонка удаляется.
+     */
+    private void migratePageContent() {
+        if (!hasColumn("page", "content")) {
+            return;
+        }
+        log.warn("В таблице page осталась колонка content, содержимое переносится в page_content");
+        int lastId = 0;
+        int migrated = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, content FROM page " +
+                    "WHERE content IS NOT NULL AND id > ? ORDER BY id LIMIT " + PAGE_CONTENT_BATCH, lastId);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object> ids = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).intValue();
+                contentStore.save(lastId, (String) row.get("content"));
+                ids.add(lastId);
+            }
+            jdbcTemplate.update("UPDATE page SET content = NULL WHERE id IN (" +
+                    String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", ids.toArray());
+            migrated += rows.size();
+        }
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        log.warn("Содержимое {} страниц перенесено в page_content, колонка page.content удалена", migrated);
+    }
+
+    private boolean hasColumn(String table, String column) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?", Integer.class, table, column) > 0;
+    }
+
+    private boolean isLemmaBinary() {
+        String collation = jdbcTemplate.queryForObject("SELECT collation_name FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'lemma' AND column_name = 'lemma'", String.class);
+        return "utf8mb4_bin".equalsIgnoreCase(collation);
+    }
+
+    private boolean hasLemmaKey() {
+        return !jdbcTemplate.queryForList("SELECT index_name FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'lemma' AND non_unique = 0 GROUP BY index_name " +
+                "HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'site_id,lemma'", String.class).isEmpty();
+    }
+}
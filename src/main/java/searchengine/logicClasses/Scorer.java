@@ -0,0 +1,17 @@
+package searchengine.logicClasses;
+
+import java.util.List;
+
+/**
+ * Оценка релевантности, выбирается настройкой search-settings.scorer.
+ */
+public interface Scorer {
+    SiteScorer forSite(int siteId, List<String> lemmas);
+
+    interface SiteScorer {
+        /**
+         * Оценка текущей страницы пересечения; номера лемм в match совпадают с порядком lemmas в forSite.
+         */
+        float score(ConjunctiveQuery match);
+    }
+}
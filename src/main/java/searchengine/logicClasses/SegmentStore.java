@@ -0,0 +1,183 @@
+package searchengine.logicClasses;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SegmentSettings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Файлы сегментов: site-{id сайта}-{номер}.seg.
+ */
+@Slf4j
+@Component
+public class SegmentStore {
+    private static final String SUFFIX = ".seg";
+
+    private final SegmentSettings settings;
+    private final Path directory;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SegmentStore(SegmentSettings settings) {
+        this.settings = settings;
+        this.directory = Paths.get(settings.getDirectory());
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public int mergeThreshold() {
+        return settings.getMergeThreshold();
+    }
+
+    /**
+     * Открывает сегменты сайта в порядке записи. Повреждённый сегмент приводит к IOException.
+     */
+    public List<IndexSegment> open(int siteId) throws IOException {
+        List<Path> files = files(siteId);
+        List<IndexSegment> segments = new ArrayList<>(files.size());
+        for (Path file : files) {
+            segments.add(IndexSegment.open(file, settings.isVerifyOnOpen()));
+        }
+        return segments;
+    }
+
+    public IndexSegment write(int siteId, SortedMap<String, CompressedPostings> postings, int[] pageIds) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("site-" + siteId + "-" + nextSequence() + SUFFIX);
+        IndexSegment.write(file, postings, pageIds);
+        return IndexSegment.open(file, false);
+    }
+
+    /**
+     * Сливает сегменты сайта в один, выбрасывая удалённые страницы.
+     */
+    public IndexSegment merge(int siteId, List<IndexSegment> segments, Set<Integer> deletedPages) throws IOException {
+        Map<String, List<CompressedPostings>> terms = new TreeMap<>();
+        List<Integer> pages = new ArrayList<>();
+        for (IndexSegment segment : segments) {
+            segment.forEachTerm((lemma, entry) -> terms.computeIfAbsent(lemma, l -> new ArrayList<>()).add(segment.postingsOf(entry)));
+            for (int pageId : segment.pageIds()) {
+                if (!deletedPages.contains(pageId)) {
+                    pages.add(pageId);
+                }
+            }
+        }
+        SortedMap<String, CompressedPostings> merged = new TreeMap<>();
+        for (Map.Entry<String, List<CompressedPostings>> term : terms.entrySet()) {
+            int total = 0;
+            for (CompressedPostings postings : term.getValue()) {
+                total += postings.size();
+            }
+            long[] packed = new long[total];
+            float[] collectedRanks = new float[total];
+            byte[][] collectedPositions = new byte[total][];
+            int size = 0;
+            for (CompressedPostings postings : term.getValue()) {
+                CompressedPostings.Cursor cursor = postings.cursor();
+                while (cursor.next()) {
+                    if (!deletedPages.contains(cursor.pageId())) {
+                        collectedRanks[size] = cursor.rank();
+                        collectedPositions[size] = TermPositions.encode(cursor.positions());
+                        packed[size] = ((long) cursor.pageId() << 32) | size;
+                        size++;
+                    }
+                }
+            }
+            if (size == 0) {
+                continue;
+            }
+            Arrays.sort(packed, 0, size);
+            int[] pageIds = new int[size];
+            float[] ranks = new float[size];
+            byte[][] positions = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                int source = (int) packed[i];
+                pageIds[i] = (int) (packed[i] >>> 32);
+                ranks[i] = collectedRanks[source];
+                positions[i] = collectedPositions[source];
+            }
+            merged.put(term.getKey(), CompressedPostings.encode(pageIds, ranks, positions, size));
+        }
+        return write(siteId, merged, pages.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public void delete(IndexSegment segment) {
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить сегмент {}: {}", segment.path(), e.getMessage());
+        }
+    }
+
+    public void deleteSite(int siteId) {
+        try {
+            for (Path file : files(siteId)) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось удалить сегменты сайта {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    private List<Path> files(int siteId) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        String prefix = "site-" + siteId + "-";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(SegmentStore::sequenceOf));
+        return files;
+    }
+
+    private long nextSequence() {
+        if (sequence.get() == 0) {
+            synchronized (sequence) {
+                if (sequence.get() == 0) {
+                    sequence.set(maxSequence());
+                }
+            }
+        }
+        return sequence.incrementAndGet();
+    }
+
+    private long maxSequence() {
+        long max = 0;
+        if (!Files.isDirectory(directory)) {
+            return max;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "site-*" + SUFFIX)) {
+            for (Path file : stream) {
+                max = Math.max(max, sequenceOf(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return max;
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+}
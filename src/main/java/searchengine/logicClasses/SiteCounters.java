@@ -0,0 +1,130 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexWriterSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики сайтов для /api/statistics, периодически сверяются с базой.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteCounters {
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexWriterSettings settings;
+
+    private final Map<Integer, Counters> sites = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconciler;
+
+    @PostConstruct
+    public void start() {
+        reconciler = Executors.newSingleThreadScheduledExecutor();
+        reconciler.scheduleWithFixedDelay(this::reconcile, 0,
+                settings.getStatisticsReconcileIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reconciler.shutdownNow();
+    }
+
+    public void pageAdded(int siteId) {
+        counters(siteId).pages.increment();
+    }
+
+    public void errorPageAdded(int siteId) {
+        Counters counters = counters(siteId);
+        counters.pages.increment();
+        counters.errors.increment();
+    }
+
+    public void pageRemoved(int siteId) {
+        counters(siteId).pages.decrement();
+    }
+
+    public void lemmasAdded(int siteId, int lemmas) {
+        counters(siteId).lemmas.add(lemmas);
+    }
+
+    public void bytesFetched(int siteId, long bytes) {
+        counters(siteId).bytesFetched.add(bytes);
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public long pages(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.pages.sum();
+    }
+
+    public long lemmas(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.lemmas.sum();
+    }
+
+    public long errors(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.errors.sum();
+    }
+
+    public long bytesFetched(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.bytesFetched.sum();
+    }
+
+    /**
+     * Приводит счётчики к COUNT(*) из базы.
+     */
+    public void reconcile() {
+        try {
+            Map<Integer, Long> pages = countBySite("SELECT site_id, COUNT(*) FROM page WHERE site_id IS NOT NULL GROUP BY site_id");
+            Map<Integer, Long> lemmas = countBySite("SELECT site_id, COUNT(*) FROM lemma GROUP BY site_id");
+            Map<Integer, Long> errors = countBySite("SELECT site_id, COUNT(*) FROM page WHERE site_id IS NOT NULL AND code >= 400 GROUP BY site_id");
+            pages.keySet().forEach(this::counters);
+            for (Map.Entry<Integer, Counters> site : sites.entrySet()) {
+                set(site.getValue().pages, pages.getOrDefault(site.getKey(), 0L));
+                set(site.getValue().lemmas, lemmas.getOrDefault(site.getKey(), 0L));
+                set(site.getValue().errors, errors.getOrDefault(site.getKey(), 0L));
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось сверить счётчики статистики с базой: {}", e.getMessage());
+        }
+    }
+
+    private Map<Integer, Long> countBySite(String sql) {
+        Map<Integer, Long> counts = new ConcurrentHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getInt(1), rs.getLong(2));
+        });
+        return counts;
+    }
+
+    private static void set(LongAdder adder, long value) {
+        adder.add(value - adder.sum());
+    }
+
+    private Counters counters(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new Counters());
+    }
+
+    private static final class Counters {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder lemmas = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesFetched = new LongAdder();
+    }
+}
@@ -0,0 +1,199 @@
+package searchengine.logicClasses;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlerSettings;
+import searchengine.controllers.ApiController;
+import searchengine.dto.index.PageValidators;
+import searchengine.model.SiteTable;
+import searchengine.repository.PageRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Обход сайта конвейером fetch -> parse -> lemmatize -> persist.
+ */
+@Slf4j
+public class SiteCrawler {
+    private static final long POLL_MILLIS = 100;
+
+    private final SiteTable site;
+    private final VisitedUrlSet visited;
+    private final CrawlFrontier frontier;
+    private final FillingTablePage fillingTablePage;
+    private final CrawlMonitor crawlMonitor;
+    private final String rootUrl;
+    private final CrawlStage<CrawlFrontier.Task> fetch;
+    private final CrawlStage<FillingTablePage.CrawledPage> parse;
+    private final CrawlStage<FillingTablePage.CrawledPage> lemmatize;
+    private final CrawlStage<FillingTablePage.CrawledPage> persist;
+    private volatile boolean upstreamStopped;
+
+    /**
+     * knownPages - страницы прошлого обхода по path для повторного обхода, при полном обходе пустая карта.
+     */
+    public SiteCrawler(SiteTable site, CrawlerSettings settings, PageRepository pageRepository, FillingLemmaAndIndex fillingLemmaAndIndex,
+                       DeleteLemma delete, PolitenessLimiter politenessLimiter, CrawlMonitor crawlMonitor,
+                       UrlNormalizer urlNormalizer, LinkFilter linkFilter, Map<String, PageValidators> knownPages,
+                       PageContentStore contentStore, SiteCounters siteCounters) {
+        this.site = site;
+        this.visited = new VisitedUrlSet(settings.getExpectedUrlsPerSite(), settings.getVisitedFalsePositiveRate());
+        this.frontier = new CrawlFrontier(settings.getMaxDepth(), visited);
+        this.fillingTablePage = new FillingTablePage(site, frontier, pageRepository, fillingLemmaAndIndex, delete, politenessLimiter,
+                crawlMonitor, urlNormalizer, linkFilter, knownPages, contentStore, siteCounters);
+        this.crawlMonitor = crawlMonitor;
+        this.rootUrl = urlNormalizer.normalize(site.getUrl());
+        this.fetch = new CrawlStage<>("fetch", settings.getWorkersPerSite());
+        this.parse = new CrawlStage<>("parse", settings.getParseThreads(), settings.getStageQueueCapacity());
+        this.lemmatize = new CrawlStage<>("lemmatize", settings.getLemmatizeThreads(), settings.getStageQueueCapacity());
+        this.persist = new CrawlStage<>("persist", settings.getPersistThreads(), settings.getStageQueueCapacity());
+    }
+
+    public void crawl() throws InterruptedException {
+        crawlMonitor.start(site.getId(), visited, this::stageMetrics);
+        frontier.offer(rootUrl != null ? rootUrl : site.getUrl(), 0);
+        ExecutorService workers = Executors.newFixedThreadPool(fetch.getThreads() + parse.getThreads() + lemmatize.getThreads());
+        ExecutorService writers = Executors.newFixedThreadPool(persist.getThreads());
+        for (int i = 0; i < fetch.getThreads(); i++) {
+            workers.execute(this::fetchLoop);
+        }
+        for (int i = 0; i < parse.getThreads(); i++) {
+            workers.execute(() -> stageLoop(parse, this::parse));
+        }
+        for (int i = 0; i < lemmatize.getThreads(); i++) {
+            workers.execute(() -> stageLoop(lemmatize, this::lemmatize));
+        }
+        for (int i = 0; i < persist.getThreads(); i++) {
+            writers.execute(() -> stageLoop(persist, this::persist));
+        }
+        workers.shutdown();
+        writers.shutdown();
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (!ApiController.checkStartFlag.get()) {
+                    workers.shutdownNow();
+                }
+            }
+            abandonQueued(parse);
+            abandonQueued(lemmatize);
+            upstreamStopped = true;
+            // persist не прерывается: дописывает свою очередь, чтобы не оборвать запись в базу
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (ApiController.checkStartFlag.get() && frontier.isFinished()) {
+                fillingTablePage.removeUnvisitedPages();
+            }
+        } finally {
+            crawlMonitor.finish(site.getId());
+        }
+    }
+
+    private void abandonQueued(CrawlStage<FillingTablePage.CrawledPage> stage) {
+        for (int i = stage.abandonQueued(); i > 0; i--) {
+            frontier.done();
+        }
+    }
+
+    private Map<String, Object> stageMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(fetch.getName(), fetch.metrics(frontier.size()));
+        metrics.put(parse.getName(), parse.metrics());
+        metrics.put(lemmatize.getName(), lemmatize.metrics());
+        metrics.put(persist.getName(), persist.metrics());
+        return metrics;
+    }
+
+    private void fetchLoop() {
+        while (ApiController.checkStartFlag.get() && !Thread.currentThread().isInterrupted()) {
+            CrawlFrontier.Task task;
+            try {
+                task = frontier.poll(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                if (frontier.isFinished()) {
+                    return;
+                }
+                continue;
+            }
+            boolean handedOff = false;
+            try {
+                long start = System.nanoTime();
+                FillingTablePage.CrawledPage page = fillingTablePage.fetch(task);
+                fetch.processed(System.nanoTime() - start);
+                (page.isFetchFailed() ? persist : parse).put(page);
+                handedOff = true;
+            } catch (InterruptedException e) {
+                fetch.abandoned();
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fetch.failed();
+                log.error("Стадия fetch: ошибка на странице {}", task.getUrl(), e);
+            } finally {
+                if (!handedOff) {
+                    frontier.done();
+                }
+            }
+        }
+    }
+
+    /**
+     * handler возвращает следующую стадию или null.
+     */
+    private void stageLoop(CrawlStage<FillingTablePage.CrawledPage> stage,
+                           Function<FillingTablePage.CrawledPage, CrawlStage<FillingTablePage.CrawledPage>> handler) {
+        while ((stage == persist || ApiController.checkStartFlag.get()) && !Thread.currentThread().isInterrupted()) {
+            FillingTablePage.CrawledPage page;
+            try {
+                page = stage.poll(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (page == null) {
+                if (frontier.isFinished() || stage == persist && upstreamStopped) {
+                    return;
+                }
+                continue;
+            }
+            boolean handedOff = false;
+            try {
+                long start = System.nanoTime();
+                CrawlStage<FillingTablePage.CrawledPage> next = handler.apply(page);
+                stage.processed(System.nanoTime() - start);
+                if (next != null) {
+                    next.put(page);
+                    handedOff = true;
+                }
+            } catch (InterruptedException e) {
+                stage.abandoned();
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                stage.failed();
+                log.error("Стадия {}: ошибка на странице {}", stage.getName(), page.getUrl(), e);
+            } finally {
+                if (!handedOff) {
+                    frontier.done();
+                }
+            }
+        }
+    }
+
+    private CrawlStage<FillingTablePage.CrawledPage> parse(FillingTablePage.CrawledPage page) {
+        fillingTablePage.parse(page);
+        return page.needsLemmas() ? lemmatize : persist;
+    }
+
+    private CrawlStage<FillingTablePage.CrawledPage> lemmatize(FillingTablePage.CrawledPage page) {
+        fillingTablePage.lemmatize(page);
+        return persist;
+    }
+
+    private CrawlStage<FillingTablePage.CrawledPage> persist(FillingTablePage.CrawledPage page) {
+        fillingTablePage.persist(page);
+        return null;
+    }
+}
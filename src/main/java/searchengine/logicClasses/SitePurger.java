@@ -0,0 +1,84 @@
+package searchengine.logicClasses;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexWriterSettings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Удаление сайта пачками DELETE ... LIMIT.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitePurger {
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexWriterSettings settings;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final PageLengths pageLengths;
+    private final SiteCounters siteCounters;
+
+    private final LongAdder sitesPurged = new LongAdder();
+    private final LongAdder rowsDeleted = new LongAdder();
+    private final LongAdder purgeMillis = new LongAdder();
+    private volatile double lastRowsPerSecond;
+
+    public void purge(int siteId) {
+        long start = System.currentTimeMillis();
+        lemmaDictionary.removeSite(siteId);
+        invertedIndex.removeSite(siteId);
+        pageLengths.removeSite(siteId);
+        siteCounters.removeSite(siteId);
+
+        long rows = 0;
+        int batchSize = settings.getPurgeBatchSize();
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM page WHERE site_id = ?", siteId);
+        if (range.get("min_id") != null) {
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            for (long from = minId; from <= maxId; from += batchSize) {
+                long to = from + batchSize - 1;
+                rows += deleteInBatches("DELETE FROM `index` WHERE page_id IN " +
+                        "(SELECT id FROM page WHERE site_id = ? AND id BETWEEN ? AND ?) LIMIT " + batchSize, batchSize, siteId, from, to);
+                rows += deleteInBatches("DELETE FROM page_content WHERE page_id IN " +
+                        "(SELECT id FROM page WHERE site_id = ? AND id BETWEEN ? AND ?) LIMIT " + batchSize, batchSize, siteId, from, to);
+            }
+        }
+        rows += deleteInBatches("DELETE FROM lemma WHERE site_id = ? LIMIT " + batchSize, batchSize, siteId);
+        rows += deleteInBatches("DELETE FROM page WHERE site_id = ? LIMIT " + batchSize, batchSize, siteId);
+        rows += jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+
+        long millis = Math.max(System.currentTimeMillis() - start, 1);
+        lastRowsPerSecond = rows * 1000.0 / millis;
+        sitesPurged.increment();
+        rowsDeleted.add(rows);
+        purgeMillis.add(millis);
+        log.info("Сайт {} удалён: {} строк за {} мс ({} строк/с)", siteId, rows, millis, Math.round(lastRowsPerSecond));
+    }
+
+    public Map<String, Object> metrics() {
+        long millis = purgeMillis.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sitesPurged", sitesPurged.sum());
+        metrics.put("rowsDeleted", rowsDeleted.sum());
+        metrics.put("rowsPerSecond", millis == 0 ? 0 : rowsDeleted.sum() * 1000.0 / millis);
+        metrics.put("lastRowsPerSecond", lastRowsPerSecond);
+        return metrics;
+    }
+
+    private long deleteInBatches(String sql, int batchSize, Object... args) {
+        long rows = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, args);
+            rows += deleted;
+        } while (deleted == batchSize);
+        return rows;
+    }
+}
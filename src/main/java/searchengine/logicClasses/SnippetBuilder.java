@@ -0,0 +1,122 @@
+package searchengine.logicClasses;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Сниппет по подготовленному тексту и позициям лемм запроса.
+ */
+public final class SnippetBuilder {
+    static final int WINDOW_TOKENS = 30;
+    private static final int CONTEXT_BEFORE = 5;
+
+    private SnippetBuilder() {
+    }
+
+    /**
+     * lemmaPositions - отсортированные номера слов каждой леммы запроса на этой странице.
+     */
+    public static String build(PageText pageText, List<int[]> lemmaPositions) {
+        if (pageText.tokenCount() == 0) {
+            return "";
+        }
+        long[] hits = hits(pageText.tokenCount(), lemmaPositions);
+        int start = 0;
+        if (hits.length > 0) {
+            start = Math.max(0, bestWindowStart(hits, lemmaPositions.size()) - CONTEXT_BEFORE);
+        }
+        int end = Math.min(pageText.tokenCount(), start + WINDOW_TOKENS);
+        start = Math.max(0, Math.min(start, end - WINDOW_TOKENS));
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) {
+            snippet.append("...");
+        }
+        int hit = 0;
+        int position = pageText.tokenStart(start);
+        for (int token = start; token < end; token++) {
+            while (hit < hits.length && (int) (hits[hit] >>> 32) < token) {
+                hit++;
+            }
+            if (hit < hits.length && (int) (hits[hit] >>> 32) == token) {
+                int tokenStart = pageText.tokenStart(token);
+                int tokenEnd = pageText.tokenEnd(token);
+                appendEscaped(snippet, pageText, position, tokenStart);
+                snippet.append("<b>");
+                appendEscaped(snippet, pageText, tokenStart, tokenEnd);
+                snippet.append("</b>");
+                position = tokenEnd;
+            }
+        }
+        appendEscaped(snippet, pageText, position, pageText.tokenEnd(end - 1));
+        if (end < pageText.tokenCount()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * Вхождения лемм запроса, упакованные как (номер слова << 32 | номер леммы) и отсортированные по номеру слова.
+     */
+    private static long[] hits(int tokenCount, List<int[]> lemmaPositions) {
+        int total = 0;
+        for (int[] positions : lemmaPositions) {
+            total += positions.length;
+        }
+        long[] hits = new long[total];
+        int size = 0;
+        for (int lemma = 0; lemma < lemmaPositions.size(); lemma++) {
+            for (int token : lemmaPositions.get(lemma)) {
+                if (token < tokenCount) {
+                    hits[size++] = ((long) token << 32) | lemma;
+                }
+            }
+        }
+        hits = Arrays.copyOf(hits, size);
+        Arrays.sort(hits);
+        return hits;
+    }
+
+    /**
+     * Скользящее окно по вхождениям: номер первого слова окна с наибольшим числом разных лемм запроса.
+     */
+    private static int bestWindowStart(long[] hits, int lemmaCount) {
+        int[] counts = new int[lemmaCount];
+        int distinct = 0;
+        int bestDistinct = 0;
+        int bestStart = (int) (hits[0] >>> 32);
+        int left = 0;
+        for (int right = 0; right < hits.length; right++) {
+            int rightToken = (int) (hits[right] >>> 32);
+            if (counts[(int) hits[right]]++ == 0) {
+                distinct++;
+            }
+            while (rightToken - (int) (hits[left] >>> 32) >= WINDOW_TOKENS - CONTEXT_BEFORE) {
+                if (--counts[(int) hits[left]] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            if (distinct > bestDistinct) {
+                bestDistinct = distinct;
+                bestStart = (int) (hits[left] >>> 32);
+            }
+        }
+        return bestStart;
+    }
+
+    private static void appendEscaped(StringBuilder snippet, PageText text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                snippet.append("&lt;");
+            } else if (c == '>') {
+                snippet.append("&gt;");
+            } else if (c == '&') {
+                snippet.append("&amp;");
+            } else {
+                snippet.append(c);
+            }
+        }
+    }
+}
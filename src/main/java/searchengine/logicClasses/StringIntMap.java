@@ -0,0 +1,184 @@
+package searchengine.logicClasses;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик строк с открытой адресацией.
+ */
+public class StringIntMap {
+    private String[] keys;
+    private int[] values;
+    private int[] hashes;
+    private int size;
+    private int mask;
+
+    public StringIntMap() {
+        this(16);
+    }
+
+    public StringIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new String[capacity];
+        values = new int[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public void addTo(char[] chars, int length, int delta) {
+        int hash = hash(chars, length);
+        int slot = slot(hash);
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], chars, length)) {
+                values[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, new String(chars, 0, length), hash, delta);
+    }
+
+    /**
+     * Возвращает значение ключа, а если ключа нет - добавляет его со значением value и возвращает value.
+     */
+    public int putIfAbsent(char[] chars, int length, int value) {
+        int hash = hash(chars, length);
+        int slot = slot(hash);
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], chars, length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, new String(chars, 0, length), hash, value);
+        return value;
+    }
+
+    public void addTo(String key, int delta) {
+        int hash = key.hashCode();
+        int slot = slot(hash);
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                values[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, key, hash, delta);
+    }
+
+    public int get(String key) {
+        int hash = key.hashCode();
+        int slot = slot(hash);
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public boolean containsKey(String key) {
+        int hash = key.hashCode();
+        int slot = slot(hash);
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(ObjIntConsumer<String> consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public List<String> keys() {
+        List<String> result = new ArrayList<>(size);
+        for (String key : keys) {
+            if (key != null) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private void insert(int slot, String key, int hash, int value) {
+        keys[slot] = key;
+        hashes[slot] = hash;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldHashes[i]);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Тот же хэш, что и у String.hashCode(), чтобы ключи из массива символов и из строк попадали в одни ячейки.
+     */
+    private static int hash(char[] chars, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static boolean equals(String key, char[] chars, int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return builder.append('}').toString();
+    }
+}
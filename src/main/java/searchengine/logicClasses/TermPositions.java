@@ -0,0 +1,68 @@
+package searchengine.logicClasses;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Позиции леммы на странице в varint-разностях.
+ */
+public final class TermPositions {
+    private static final int[] NONE = new int[0];
+
+    private TermPositions() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        byte[] bytes = new byte[positions.length * 2 + 5];
+        int offset = 0;
+        int previous = 0;
+        for (int position : positions) {
+            if (bytes.length - offset < 5) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int delta = position - previous;
+            while ((delta & ~0x7F) != 0) {
+                bytes[offset++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[offset++] = (byte) delta;
+            previous = position;
+        }
+        return Arrays.copyOf(bytes, offset);
+    }
+
+    public static int[] decode(byte[] bytes) {
+        return bytes == null ? NONE : decode(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Декодирует length байт буфера, начиная с offset. Число позиций - число байт без старшего бита.
+     */
+    public static int[] decode(ByteBuffer buffer, int offset, int length) {
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer.get(i) >= 0) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return NONE;
+        }
+        int[] positions = new int[count];
+        int previous = 0;
+        int at = offset;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(at++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            positions[i] = previous;
+        }
+        return positions;
+    }
+}
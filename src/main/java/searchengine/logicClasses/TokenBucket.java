@@ -0,0 +1,39 @@
+package searchengine.logicClasses;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ограничитель частоты запросов.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final long nanosPerToken;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(int capacity, long intervalMillis) {
+        this.capacity = Math.max(capacity, 1);
+        this.nanosPerToken = Math.max(TimeUnit.MILLISECONDS.toNanos(intervalMillis), 1);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitUntil;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (double) (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+            tokens -= 1;
+            waitUntil = tokens >= 0 ? now : now + (long) (-tokens * nanosPerToken);
+        }
+        long remaining;
+        while ((remaining = waitUntil - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package searchengine.logicClasses;
+
+/**
+ * Разбор текста на русские слова без создания строк.
+ */
+public final class Tokenizer implements CharSequence {
+    private final CharSequence text;
+    private char[] buffer = new char[32];
+    private int length;
+    private int position;
+    private int start;
+    private int tokenIndex = -1;
+
+    public Tokenizer(CharSequence text) {
+        this.text = text;
+    }
+
+    public boolean next() {
+        int textLength = text.length();
+        while (position < textLength && toLowerCyrillic(text.charAt(position)) == 0) {
+            position++;
+        }
+        if (position >= textLength) {
+            length = 0;
+            return false;
+        }
+        start = position;
+        length = 0;
+        char c;
+        while (position < textLength && (c = toLowerCyrillic(text.charAt(position))) != 0) {
+            if (length == buffer.length) {
+                char[] grown = new char[length * 2];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+            buffer[length++] = c;
+            position++;
+        }
+        tokenIndex++;
+        return true;
+    }
+
+    public char[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Смещение начала текущего слова в исходном тексте.
+     */
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return position;
+    }
+
+    /**
+     * Порядковый номер текущего слова в тексте, начиная с нуля.
+     */
+    public int tokenIndex() {
+        return tokenIndex;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return buffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new String(buffer, from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Возвращает строчную букву для кириллического символа или 0 для любого другого.
+     */
+    static char toLowerCyrillic(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return 0;
+    }
+}
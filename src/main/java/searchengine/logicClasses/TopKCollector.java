@@ -0,0 +1,172 @@
+package searchengine.logicClasses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * k лучших страниц и общее число совпадений.
+ */
+public class TopKCollector {
+    private final int capacity;
+    private final int[] pageIds;
+    private final float[] scores;
+    private int size;
+    private int totalHits;
+    private float maxScore;
+
+    public TopKCollector(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.pageIds = new int[this.capacity];
+        this.scores = new float[this.capacity];
+    }
+
+    public void collect(int pageId, float score) {
+        totalHits++;
+        if (totalHits == 1 || score > maxScore) {
+            maxScore = score;
+        }
+        if (size < capacity) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && less(pageIds[0], scores[0], pageId, score)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int totalHits() {
+        return totalHits;
+    }
+
+    public float maxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Сливает результаты нескольких коллекторов в этот.
+     */
+    public void mergeFrom(List<TopKCollector> parts) {
+        List<Result> results = new ArrayList<>(parts.size());
+        for (TopKCollector part : parts) {
+            if (part.totalHits > 0 && (totalHits == 0 || part.maxScore > maxScore)) {
+                maxScore = part.maxScore;
+            }
+            totalHits += part.totalHits;
+            results.add(part.drain());
+        }
+        int[] heads = new int[results.size()];
+        while (size < capacity) {
+            int best = -1;
+            for (int part = 0; part < heads.length; part++) {
+                Result result = results.get(part);
+                if (heads[part] == result.size()) {
+                    continue;
+                }
+                if (best < 0 || less(results.get(best).pageId(heads[best]), results.get(best).score(heads[best]),
+                        result.pageId(heads[part]), result.score(heads[part]))) {
+                    best = part;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            Result result = results.get(best);
+            pageIds[size] = result.pageId(heads[best]);
+            scores[size] = result.score(heads[best]);
+            siftUp(size++);
+            heads[best]++;
+        }
+    }
+
+    /**
+     * Извлекает накопленные страницы в порядке убывания релевантности. Куча при этом опустошается.
+     */
+    public Result drain() {
+        int count = size;
+        int[] sortedPageIds = new int[count];
+        float[] sortedScores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedPageIds[i] = pageIds[0];
+            sortedScores[i] = scores[0];
+            size--;
+            pageIds[0] = pageIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new Result(sortedPageIds, sortedScores);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!less(pageIds[index], scores[index], pageIds[parent], scores[parent])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && less(pageIds[left], scores[left], pageIds[smallest], scores[smallest])) {
+                smallest = left;
+            }
+            if (right < size && less(pageIds[right], scores[right], pageIds[smallest], scores[smallest])) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        int pageId = pageIds[first];
+        pageIds[first] = pageIds[second];
+        pageIds[second] = pageId;
+        float score = scores[first];
+        scores[first] = scores[second];
+        scores[second] = score;
+    }
+
+    /**
+     * При равной релевантности выше стоит страница с меньшим id, чтобы порядок выдачи был стабильным между запросами.
+     */
+    private static boolean less(int firstPageId, float firstScore, int secondPageId, float secondScore) {
+        return firstScore < secondScore || (firstScore == secondScore && firstPageId > secondPageId);
+    }
+
+    public static final class Result {
+        private final int[] pageIds;
+        private final float[] scores;
+
+        private Result(int[] pageIds, float[] scores) {
+            this.pageIds = pageIds;
+            this.scores = scores;
+        }
+
+        public int size() {
+            return pageIds.length;
+        }
+
+        public int pageId(int position) {
+            return pageIds[position];
+        }
+
+        public float score(int position) {
+            return scores[position];
+        }
+    }
+}
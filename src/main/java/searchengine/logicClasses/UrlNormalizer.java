@@ -0,0 +1,187 @@
+package searchengine.logicClasses;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Канонический вид http(s)-адреса.
+ */
+@Component
+public class UrlNormalizer {
+    private final Set<String> trackingParameters = new HashSet<>();
+    private final List<String> trackingPrefixes = new ArrayList<>();
+
+    public UrlNormalizer(SitesList settings) {
+        for (String parameter : settings.getTrackingParameters()) {
+            String name = parameter.toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                trackingPrefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                trackingParameters.add(name);
+            }
+        }
+    }
+
+    /**
+     * Канонический адрес или null, если адрес не http(s) или не разбирается.
+     */
+    public String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && url.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int fragment = url.indexOf('#', start);
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+
+        int schemeEnd = url.indexOf("://", start);
+        if (schemeEnd < 0 || schemeEnd >= end) {
+            return null;
+        }
+        String scheme;
+        if (url.regionMatches(true, start, "https", 0, 5) && schemeEnd - start == 5) {
+            scheme = "https";
+        } else if (url.regionMatches(true, start, "http", 0, 4) && schemeEnd - start == 4) {
+            scheme = "http";
+        } else {
+            return null;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?') {
+                break;
+            }
+            authorityEnd++;
+        }
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) {
+            hostStart = authorityStart;
+        }
+        int hostEnd = authorityEnd;
+        int colon = url.indexOf(':', hostStart);
+        if (colon >= 0 && colon < authorityEnd) {
+            hostEnd = colon;
+        }
+        if (hostEnd == hostStart) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder(end - start);
+        result.append(scheme).append("://");
+        for (int i = hostStart; i < hostEnd; i++) {
+            result.append(Character.toLowerCase(url.charAt(i)));
+        }
+        if (hostEnd < authorityEnd) {
+            String port = url.substring(hostEnd + 1, authorityEnd);
+            if (!port.isEmpty() && !(scheme.equals("http") && port.equals("80"))
+                    && !(scheme.equals("https") && port.equals("443"))) {
+                result.append(':').append(port);
+            }
+        }
+
+        int query = url.indexOf('?', authorityEnd);
+        int pathEnd = query >= 0 && query < end ? query : end;
+        appendPath(url, authorityEnd, pathEnd, result);
+        if (pathEnd < end) {
+            appendQuery(url, pathEnd + 1, end, result);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Путь с разрешёнными "." и "..", без параметров сегментов и пустых сегментов.
+     */
+    private static void appendPath(String url, int from, int to, StringBuilder result) {
+        int base = result.length();
+        int position = from;
+        while (position < to) {
+            while (position < to && url.charAt(position) == '/') {
+                position++;
+            }
+            int segmentEnd = position;
+            while (segmentEnd < to && url.charAt(segmentEnd) != '/') {
+                segmentEnd++;
+            }
+            int contentEnd = url.indexOf(';', position);
+            if (contentEnd < 0 || contentEnd > segmentEnd) {
+                contentEnd = segmentEnd;
+            }
+            int length = contentEnd - position;
+            if (length == 1 && url.charAt(position) == '.') {
+                // текущий каталог
+            } else if (length == 2 && url.charAt(position) == '.' && url.charAt(position + 1) == '.') {
+                int parent = result.lastIndexOf("/");
+                result.setLength(Math.max(parent, base));
+            } else if (length > 0) {
+                result.append('/').append(url, position, contentEnd);
+            }
+            position = segmentEnd;
+        }
+        if (result.length() == base) {
+            result.append('/');
+        }
+    }
+
+    /**
+     * Параметры запроса без служебных, отсортированные по имени, чтобы разный порядок давал один адрес.
+     */
+    private void appendQuery(String url, int from, int to, StringBuilder result) {
+        List<String> parameters = new ArrayList<>();
+        int position = from;
+        while (position < to) {
+            int parameterEnd = url.indexOf('&', position);
+            if (parameterEnd < 0 || parameterEnd > to) {
+                parameterEnd = to;
+            }
+            if (parameterEnd > position) {
+                String parameter = url.substring(position, parameterEnd);
+                if (!isTracking(parameter)) {
+                    parameters.add(parameter);
+                }
+            }
+            position = parameterEnd + 1;
+        }
+        if (parameters.isEmpty()) {
+            return;
+        }
+        parameters.sort(null);
+        result.append('?');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                result.append('&');
+            }
+            result.append(parameters.get(i));
+        }
+    }
+
+    private boolean isTracking(String parameter) {
+        int equals = parameter.indexOf('=');
+        String name = (equals < 0 ? parameter : parameter.substring(0, equals)).toLowerCase(Locale.ROOT);
+        if (trackingParameters.contains(name)) {
+            return true;
+        }
+        for (String prefix : trackingPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
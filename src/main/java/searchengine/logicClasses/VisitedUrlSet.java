@@ -0,0 +1,112 @@
+package searchengine.logicClasses;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Найденные адреса сайта: фильтр Блума и точное множество отпечатков.
+ */
+public class VisitedUrlSet {
+    private static final int ESTIMATED_BYTES_PER_FINGERPRINT = 64;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final Set<Long> fingerprints = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder bloomPositives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public VisitedUrlSet(int expectedUrls, double falsePositiveRate) {
+        int n = Math.max(expectedUrls, 1);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.min((m + 63) >>> 6, Integer.MAX_VALUE));
+        this.bitCount = (long) bits.length() << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Отмечает адрес как найденный. Возвращает true, только если адрес раньше не встречался.
+     */
+    public boolean claim(String url) {
+        claims.increment();
+        long fingerprint = fingerprint(url);
+        boolean maybeSeen = setBits(fingerprint);
+        if (maybeSeen) {
+            bloomPositives.increment();
+        }
+        boolean added = fingerprints.add(fingerprint);
+        if (maybeSeen && added) {
+            falsePositives.increment();
+        }
+        return added;
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    public long memoryBytes() {
+        return ((long) bits.length() << 3) + (long) fingerprints.size() * ESTIMATED_BYTES_PER_FINGERPRINT;
+    }
+
+    public Map<String, Object> metrics() {
+        int urls = size();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("urls", urls);
+        metrics.put("claims", claims.sum());
+        metrics.put("bloomBits", bitCount);
+        metrics.put("bloomHashes", hashCount);
+        metrics.put("memoryBytes", memoryBytes());
+        metrics.put("bloomPositives", bloomPositives.sum());
+        metrics.put("falsePositives", falsePositives.sum());
+        metrics.put("falsePositiveRate", urls == 0 ? 0 : (double) falsePositives.sum() / urls);
+        return metrics;
+    }
+
+    /**
+     * Ставит биты отпечатка и сообщает, были ли они все уже установлены.
+     */
+    private boolean setBits(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        boolean allSet = true;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    allSet = false;
+                    break;
+                }
+                current = bits.get(word);
+            }
+        }
+        return allSet;
+    }
+
+    /**
+     * FNV-1a по символам адреса с финальным перемешиванием из MurmurHash3.
+     */
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
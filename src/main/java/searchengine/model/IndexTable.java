@@ -23,5 +23,8 @@ public class IndexTable {
     @Column(name = "[rank]")
     private float rank;
 
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
+
 
 }
@@ -7,7 +7,7 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "lemma")
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "lemma"}))
 public class Lemma {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,7 +17,7 @@ public class Lemma {
     @JoinColumn(name = "site_id")
     private SiteTable site;
 
-    @Column( columnDefinition = "VARCHAR(255)")
+    @Column( columnDefinition = "VARCHAR(255) COLLATE utf8mb4_bin")
     private String lemma;
 
     private int frequency;
@@ -23,9 +23,25 @@ public class Page {
 
     private int code;
 
-    @Column(columnDefinition = "LONGTEXT")
-    private String content;
+    @Column(columnDefinition = "VARCHAR(512)")
+    private String title;
+
+    @Column(name = "word_count")
+    private Integer wordCount;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
 
     @OneToMany(mappedBy = "page",cascade = CascadeType.ALL)
     private List<IndexTable> indexes;
+
+    public void setTitle(String title) {
+        this.title = title == null || title.length() <= 512 ? title : title.substring(0, 512);
+    }
 }
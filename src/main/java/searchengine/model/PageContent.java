@@ -0,0 +1,32 @@
+package searchengine.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+@Data
+@Entity
+@Table(name = "page_content")
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(name = "raw_length")
+    private int rawLength;
+
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    @Column(name = "text_length")
+    private int textLength;
+
+    @Lob
+    @Column(name = "text_data", columnDefinition = "LONGBLOB")
+    private byte[] textData;
+
+    @Lob
+    @Column(name = "token_offsets", columnDefinition = "LONGBLOB")
+    private byte[] tokenOffsets;
+}
@@ -1,7 +1,10 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.index.PostingRow;
 import searchengine.model.IndexTable;
 
 import java.util.List;
@@ -13,4 +16,15 @@ public interface IndexRepository extends JpaRepository<IndexTable, Integer> {
     List<IndexTable> findAllByLemmaId(int lemmaId);
 
     IndexTable findByPageIdAndLemmaId(int pageId, int lemmaId);
+
+    @Query("select l.lemma from IndexTable i join i.lemma l where i.page.id = :pageId")
+    List<String> findLemmasByPageId(@Param("pageId") int pageId);
+
+    @Query("select new searchengine.dto.index.PostingRow(l.lemma, i.page.id, i.rank, i.positions) " +
+            "from IndexTable i join i.lemma l where l.site.id = :siteId order by i.page.id")
+    List<PostingRow> findPostingsBySiteId(@Param("siteId") int siteId);
+
+    @Query("select new searchengine.dto.index.PostingRow(l.lemma, i.page.id, i.rank, i.positions) " +
+            "from IndexTable i join i.lemma l where l.site.id = :siteId and i.page.id > :pageId order by i.page.id")
+    List<PostingRow> findPostingsBySiteIdAfterPage(@Param("siteId") int siteId, @Param("pageId") int pageId);
 }
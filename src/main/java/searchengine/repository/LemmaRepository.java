@@ -14,5 +14,7 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
 
     List<Lemma> findBySiteId(int siteId);
 
+    long countBySiteId(int siteId);
+
     List<Lemma> findAllByLemma(String lemma);
 }
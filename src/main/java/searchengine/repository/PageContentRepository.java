@@ -0,0 +1,18 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.index.PageTextRow;
+import searchengine.model.PageContent;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+    @Query("select new searchengine.dto.index.PageTextRow(c.pageId, c.textLength, c.textData, c.tokenOffsets) " +
+            "from PageContent c where c.pageId in :pageIds and c.textData is not null and c.tokenOffsets is not null")
+    List<PageTextRow> findTextsByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+}
@@ -1,19 +1,41 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.index.PageLength;
+import searchengine.dto.index.PageValidators;
+import searchengine.dto.index.SearchPageRow;
 import searchengine.model.Page;
 import searchengine.model.SiteTable;
 
+import java.util.Collection;
 import java.util.List;
 //import searchengine.model.PrimaryKeyPage;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
-    Page findByPath(String path);
+    Page findBySiteIdAndPath(int siteId, String path);
 
     List<Page> findAllBySiteId (int siteId);
 
+    long countBySiteId(int siteId);
+
     List<Page> findAllByCode(int code);
 
+    @Query("select new searchengine.dto.index.PageValidators(p.id, p.path, p.etag, p.lastModified, p.contentHash) " +
+            "from Page p where p.site.id = :siteId and p.code = 200")
+    List<PageValidators> findValidatorsBySiteId(@Param("siteId") int siteId);
+
+    @Query("select p.id from Page p where p.site.id = :siteId")
+    List<Integer> findIdsBySiteId(@Param("siteId") int siteId);
+
+    @Query("select new searchengine.dto.index.PageLength(p.site.id, p.id, p.wordCount) from Page p where p.wordCount > 0")
+    List<PageLength> findPageLengths();
+
+    @Query("select new searchengine.dto.index.SearchPageRow(p.id, p.path, p.title, s.id, s.url, s.name) " +
+            "from Page p join p.site s where p.id in :pageIds")
+    List<SearchPageRow> findSearchPages(@Param("pageIds") Collection<Integer> pageIds);
+
 }
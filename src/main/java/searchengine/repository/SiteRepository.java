@@ -4,7 +4,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import searchengine.model.SiteTable;
 
+import java.util.List;
+
 @Repository
 public interface SiteRepository extends JpaRepository<SiteTable, Integer> {
-    SiteTable findByUrl(String url);
+    List<SiteTable> findAllByUrl(String url);
 }
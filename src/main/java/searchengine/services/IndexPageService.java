@@ -1,6 +1,7 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.http.ResponseEntity;
@@ -11,8 +12,13 @@ import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.ResponseWithError;
 import searchengine.dto.statistics.ResponseWithoutError;
+import searchengine.logicClasses.ActiveSites;
+import searchengine.logicClasses.ContentHash;
 import searchengine.logicClasses.DeleteLemma;
 import searchengine.logicClasses.FillingLemmaAndIndex;
+import searchengine.logicClasses.PageContentStore;
+import searchengine.logicClasses.SiteCounters;
+import searchengine.logicClasses.UrlNormalizer;
 import searchengine.model.Page;
 import searchengine.model.SiteStatus;
 import searchengine.model.SiteTable;
@@ -34,9 +40,17 @@ public class IndexPageService {
     private final PageRepository pageRepository;
     private final DeleteLemma delete;
     private final FillingLemmaAndIndex fillingLemmaAndIndex;
+    private final UrlNormalizer urlNormalizer;
+    private final ActiveSites activeSites;
+    private final PageContentStore contentStore;
+    private final SiteCounters siteCounters;
 
     @Async
     public void indexPage(String url) throws IOException {
+        String canonicalUrl = urlNormalizer.normalize(url);
+        if (canonicalUrl != null) {
+            url = canonicalUrl;
+        }
 
         String siteFromUrl = url;
         String http = siteFromUrl.substring(0, siteFromUrl.indexOf("://") + 3);
@@ -44,7 +58,8 @@ public class IndexPageService {
         siteFromUrl = siteFromUrl.substring(0, siteFromUrl.indexOf("/") + 1);
         siteFromUrl = http + siteFromUrl;
 
-        SiteTable site = siteRepository.findByUrl(siteFromUrl);
+        Integer activeId = activeSites.siteId(siteFromUrl);
+        SiteTable site = activeId == null ? null : siteRepository.findById(activeId).orElse(null);
         if (site == null) {
             for (Site s : sites.getSites()) {
                 if (url.contains(s.getUrl())) {
@@ -54,6 +69,7 @@ public class IndexPageService {
                     site.setStatusTime(new Date());
                     site.setStatus(SiteStatus.INDEXED);
                     siteRepository.save(site);
+                    activeSites.activate(site.getUrl(), site.getId());
                     break;
                 }
             }
@@ -62,17 +78,19 @@ public class IndexPageService {
             Page page=new Page();
             page.setPath(url);
             page.setCode(400);
-            page.setContent("Данная страница находится за пределами сайтов, \n" +
-                    "указанных в конфигурационном файле");
             pageRepository.save(page);
+            contentStore.save(page.getId(), "Данная страница находится за пределами сайтов, \n" +
+                    "указанных в конфигурационном файле");
             return;
         }
 
         Document document;
         try {
-            document = Jsoup.connect(url).
+            Connection.Response response = Jsoup.connect(url).
                     userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com").get();
+                    .referrer("http://www.google.com").execute();
+            siteCounters.bytesFetched(site.getId(), response.bodyAsBytes().length);
+            document = response.parse();
         } catch (IOException e) {
             Page page=new Page();
             page.setPath(url.substring(site.getUrl().length() - 1));
@@ -84,20 +102,26 @@ public class IndexPageService {
 
         String path = url.substring(site.getUrl().length() - 1);
 
-        Page detectedPage = pageRepository.findByPath(path);
+        Page detectedPage = pageRepository.findBySiteIdAndPath(site.getId(), path);
         if (detectedPage != null) {
             delete.deleteLemmaAndIndex(detectedPage);
+            contentStore.delete(detectedPage.getId());
             pageRepository.delete(detectedPage);
+            siteCounters.pageRemoved(site.getId());
         }
 
         Page page = new Page();
         page.setPath(path);
         page.setSite(site);
         page.setCode(200);
-        page.setContent(String.valueOf(document));
+        String content = String.valueOf(document);
+        page.setTitle(document.title());
+        page.setContentHash(ContentHash.of(content));
         pageRepository.save(page);
+        siteCounters.pageAdded(site.getId());
+        contentStore.save(page.getId(), content);
 
-        fillingLemmaAndIndex.fillingLemmaIndex(page,true);
+        fillingLemmaAndIndex.fillingLemmaIndex(page, document.text(), true);
 
     }
 
@@ -0,0 +1,49 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.logicClasses.BatchIndexWriter;
+import searchengine.logicClasses.CrawlMonitor;
+import searchengine.logicClasses.IndexStatistics;
+import searchengine.logicClasses.InvertedIndex;
+import searchengine.logicClasses.LemmaDictionary;
+import searchengine.logicClasses.Lemmatization;
+import searchengine.logicClasses.MorphologyAnalyzer;
+import searchengine.logicClasses.PageContentStore;
+import searchengine.logicClasses.QueryResultCache;
+import searchengine.logicClasses.SitePurger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsService {
+    private final MorphologyAnalyzer morphologyAnalyzer;
+    private final Lemmatization lemmatization;
+    private final BatchIndexWriter batchIndexWriter;
+    private final LemmaDictionary lemmaDictionary;
+    private final CrawlMonitor crawlMonitor;
+    private final SitePurger sitePurger;
+    private final InvertedIndex invertedIndex;
+    private final PageContentStore contentStore;
+    private final QueryResultCache resultCache;
+    private final SearchService searchService;
+    private final IndexStatistics indexStatistics;
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("morphology", morphologyAnalyzer.metrics());
+        metrics.put("lemmatization", lemmatization.metrics());
+        metrics.put("indexWriter", batchIndexWriter.metrics());
+        metrics.put("lemmaDictionary", lemmaDictionary.metrics());
+        metrics.put("crawler", crawlMonitor.metrics());
+        metrics.put("sitePurger", sitePurger.metrics());
+        metrics.put("invertedIndex", invertedIndex.metrics());
+        metrics.put("indexStatistics", indexStatistics.metrics());
+        metrics.put("pageContent", contentStore.metrics());
+        metrics.put("resultCache", resultCache.metrics());
+        metrics.put("search", searchService.metrics());
+        return metrics;
+    }
+}
@@ -1,260 +1,342 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.index.SearchPageRow;
 import searchengine.dto.statistics.QueryResponse;
 import searchengine.dto.statistics.QueryResponseDataItems;
+import searchengine.logicClasses.ActiveSites;
+import searchengine.logicClasses.CompressedPostings;
+import searchengine.logicClasses.ConjunctiveQuery;
+import searchengine.logicClasses.IndexStatistics;
+import searchengine.logicClasses.InvertedIndex;
 import searchengine.logicClasses.Lemmatization;
-import searchengine.model.IndexTable;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
-import searchengine.model.SiteTable;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.logicClasses.PageContentStore;
+import searchengine.logicClasses.PageText;
+import searchengine.logicClasses.PhraseQuery;
+import searchengine.logicClasses.QueryResultCache;
+import searchengine.logicClasses.Scorer;
+import searchengine.logicClasses.SnippetBuilder;
+import searchengine.logicClasses.StringIntMap;
+import searchengine.logicClasses.TopKCollector;
 import searchengine.repository.PageRepository;
-import searchengine.repository.SiteRepository;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SearchService {
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
-    private final PageRepository pageRepository;
-    private final SiteRepository siteRepository;
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]+)\"");
 
-    public QueryResponse search(String query, String site, int offset, int limit) throws IOException {
-        LinkedHashSet<QueryResponseDataItems> queryResponseList = new LinkedHashSet<>();
-        HashMap<String, Integer> map = Lemmatization.lemmatization(query);
-        int totalPageCount = (int) pageRepository.count();
-        HashMap<String, Integer> rareLemma = new HashMap<>();
-        List<Lemma> lemmaList = new ArrayList<>();
-        for (String lemma : map.keySet()) {
-            int countPage = 0;
-            lemmaList = lemmaRepository.findAllByLemma(lemma);
-            for (Lemma l : lemmaList) {
-                countPage = countPage + l.getFrequency();
-            }
+    private final PageRepository pageRepository;
+    private final ActiveSites activeSites;
+    private final PageContentStore contentStore;
+    private final InvertedIndex invertedIndex;
+    private final Lemmatization lemmatization;
+    private final SearchSettings searchSettings;
+    private final Map<String, Scorer> scorers;
+    private final QueryResultCache resultCache;
+    private final IndexStatistics statistics;
+
+    private ThreadPoolExecutor siteExecutor;
+    private final LongAdder siteSearches = new LongAdder();
+    private final LongAdder siteTimeouts = new LongAdder();
+    private final LongAdder siteFailures = new LongAdder();
+
+    /**
+     * Ограниченный пул поиска по сайтам.
+     */
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, searchSettings.getSiteThreads());
+        siteExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, searchSettings.getSiteQueueCapacity())),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
 
-            if ((double) countPage / totalPageCount <= 0.6) {
-                rareLemma.put(lemma, countPage);
-            }
-        }
-        lemmaList.clear();
-        Map<String, Integer> sortedMap = rareLemma.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey, Map.Entry::getValue, (oldValue, newValue) -> oldValue, LinkedHashMap::new));
+    @PreDestroy
+    public void stop() {
+        siteExecutor.shutdownNow();
+    }
 
+    public QueryResponse search(String query, String site, int offset, int limit) throws IOException {
+        StringIntMap map = lemmatization.lemmatization(query);
+        List<PhraseQuery> phrases = phrases(query);
+        List<String> queryLemmas = map.keys();
 
-        LinkedHashSet<String> linkedLemma = new LinkedHashSet<>(sortedMap.keySet());
         int siteId = 0;
 
         if (!site.isEmpty()) {
-            siteId = siteRepository.findByUrl(site).getId();
+            Integer activeId = activeSites.siteId(site);
+            if (activeId == null) {
+                QueryResponse queryResponse = new QueryResponse();
+                queryResponse.setResult(true);
+                queryResponse.setCount(0);
+                queryResponse.setData(new LinkedHashSet<>());
+                return queryResponse;
+            }
+            siteId = activeId;
         }
 
-        HashSet<Integer> pageList = searchListWithPageId(sortedMap, siteId);
-
-        queryResponseList = creationListOfResponseDataItem(linkedLemma, pageList, map.keySet());
+        List<Integer> siteIds = new ArrayList<>(siteId != 0 ? List.of(siteId) : activeSites.siteIds());
+        Collections.sort(siteIds);
+        String cacheKey = QueryResultCache.key(site, queryLemmas, phrases);
+        int requested = (int) Math.min((long) offset + limit, searchSettings.getMaxResultDepth());
+        QueryResultCache.Entry result = resultCache.get(cacheKey, siteIds, requested);
+        if (result == null) {
+            long[] generations = resultCache.generations(siteIds);
+            int depth = Math.min(Math.max(requested, searchSettings.getResultCacheDepth()), searchSettings.getMaxResultDepth());
+            TopKCollector collector = new TopKCollector(depth);
+            boolean complete = searchListWithPageId(queryLemmas, siteIds, collector, phrases);
+            result = resultCache.put(cacheKey, siteIds, generations, collector, depth, complete);
+        }
 
         QueryResponse queryResponse = new QueryResponse();
         queryResponse.setResult(true);
-        queryResponse.setCount(queryResponseList.size());
-
-        LinkedHashSet<QueryResponseDataItems> listToData = new LinkedHashSet<>();
-        int i = 0;
-        for (QueryResponseDataItems dataItems : queryResponseList) {
-            if (i >= offset && i < offset + limit) {
-                listToData.add(dataItems);
-            }
-            i++;
-        }
-        queryResponse.setData(listToData);
+        queryResponse.setCount(result.totalHits());
+        queryResponse.setData(creationListOfResponseDataItem(result.ranked(), offset, limit, new HashSet<>(queryLemmas)));
 
         return queryResponse;
 
     }
 
 
-    public HashSet<Integer> searchListWithPageId(Map<String, Integer> sortLemma, int siteId) {
-
-        HashSet<Integer> firstPageList = new HashSet<>();
-        if (siteId != 0) {
-            for (String lemmas : sortLemma.keySet()) {
-                List<IndexTable> indexTableList = new ArrayList<>();
-                HashSet<Integer> secondPageList = new HashSet<>();
-
-                if (firstPageList.isEmpty()) {
-                    Lemma lemma = lemmaRepository.findByLemmaAndSiteId(lemmas, siteId);
-                    if (lemma != null) {
-                        indexTableList.addAll(indexRepository.findAllByLemmaId(lemma.getId()));
-                        for (IndexTable index : indexTableList) {
-                            firstPageList.add(pageRepository.findById(index.getPage().getId()).get().getId());
-                        }
-                    } else {
-                        break;
-                    }
-                } else {
-                    Lemma lemma = lemmaRepository.findByLemmaAndSiteId(lemmas, siteId);
-                    if (lemma != null) {
-                        indexTableList.addAll(indexRepository.findAllByLemmaId(lemma.getId()));
-                        for (IndexTable index : indexTableList) {
-                            secondPageList.add(pageRepository.findById(index.getPage().getId()).get().getId());
-                        }
-                        firstPageList.retainAll(secondPageList);
-                        if (firstPageList.isEmpty()) {
-                            break;
-                        }
-                    } else {
-                        break;
-                    }
-                }
+    /**
+     * Фразы в кавычках из запроса.
+     */
+    private List<PhraseQuery> phrases(String query) {
+        List<PhraseQuery> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            PhraseQuery phrase = PhraseQuery.of(lemmatization.analyze(matcher.group(1)));
+            if (phrase.isPositional()) {
+                phrases.add(phrase);
             }
-        } else {
-            for (String lemmas : sortLemma.keySet()) {
-                List<IndexTable> indexTableList = new ArrayList<>();
-                HashSet<Integer> secondPageList = new HashSet<>();
-
-                if (firstPageList.isEmpty()) {
-
-                    List<Lemma> lemmaList = lemmaRepository.findAllByLemma(lemmas);
-                    if (!lemmaList.isEmpty()) {
-                        for (Lemma lemma : lemmaList) {
-                            indexTableList.addAll(indexRepository.findAllByLemmaId(lemma.getId()));
-                        }
+        }
+        return phrases;
+    }
 
-                        for (IndexTable index : indexTableList) {
-                            firstPageList.add(pageRepository.findById(index.getPage().getId()).get().getId());
-                        }
-                    } else {
-                        break;
-                    }
+    /**
+     * Ищет по сайтам в пуле; false, если какой-то сайт не успел.
+     */
+    public boolean searchListWithPageId(List<String> queryLemmas, List<Integer> siteIds, TopKCollector collector, List<PhraseQuery> phrases) {
 
-                } else {
-                    List<Lemma> lemmaList = lemmaRepository.findAllByLemma(lemmas);
-                    if (!lemmaList.isEmpty()) {
+        if (queryLemmas.isEmpty()) {
+            return true;
+        }
+        Set<String> phraseLemmas = new HashSet<>();
+        for (PhraseQuery phrase : phrases) {
+            phraseLemmas.addAll(phrase.lemmas());
+        }
+        Scorer scorer = scorers.getOrDefault(searchSettings.getScorer(), scorers.get("rank-sum"));
+        int depth = collector.capacity();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchSettings.getSiteTimeoutMillis());
+        List<Future<TopKCollector>> futures = new ArrayList<>(siteIds.size());
+        boolean complete = true;
+        for (Integer id : siteIds) {
+            try {
+                futures.add(siteExecutor.submit(() -> searchSite(id, siteLemmas(id, queryLemmas, phraseLemmas), scorer, depth, phrases)));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+                siteTimeouts.increment();
+                complete = false;
+                log.warn("Поиск по сайту {} отклонён: пул поиска переполнен", id);
+            }
+        }
+        List<TopKCollector> parts = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<TopKCollector> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            try {
+                parts.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                siteTimeouts.increment();
+                complete = false;
+                log.warn("Поиск по сайту {} не уложился в {} мс", siteIds.get(i), searchSettings.getSiteTimeoutMillis());
+            } catch (ExecutionException e) {
+                siteFailures.increment();
+                complete = false;
+                log.error("Ошибка поиска по сайту {}: {}", siteIds.get(i), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                futures.stream().filter(Objects::nonNull).forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                complete = false;
+                break;
+            }
+        }
+        siteSearches.add(siteIds.size());
+        collector.mergeFrom(parts);
+        return complete;
+    }
 
-                        for (Lemma lemma : lemmaList) {
-                            indexTableList.addAll(indexRepository.findAllByLemmaId(lemma.getId()));
-                        }
-                        for (IndexTable index : indexTableList) {
-                            secondPageList.add(pageRepository.findById(index.getPage().getId()).get().getId());
-                        }
+    /**
+     * Леммы запроса для сайта, от редких к частым.
+     */
+    private List<String> siteLemmas(int siteId, List<String> queryLemmas, Set<String> phraseLemmas) {
+        List<String> lemmas = new ArrayList<>(queryLemmas.size());
+        for (String lemma : queryLemmas) {
+            if (statistics.pageFraction(siteId, lemma) <= searchSettings.getCommonLemmaThreshold() || phraseLemmas.contains(lemma)) {
+                lemmas.add(lemma);
+            }
+        }
+        lemmas.sort(Comparator.comparingInt(lemma -> statistics.documentFrequency(siteId, lemma)));
+        return lemmas;
+    }
 
-                        firstPageList.retainAll(secondPageList);
-                        if (firstPageList.isEmpty()) {
-                            break;
-                        }
-                    } else {
-                        break;
-                    }
+    private TopKCollector searchSite(int id, List<String> lemmas, Scorer scorer, int depth, List<PhraseQuery> phrases) {
+        TopKCollector collector = new TopKCollector(depth);
+        if (lemmas.isEmpty() || statistics.pageCount(id) == 0) {
+            return collector;
+        }
+        Scorer.SiteScorer siteScorer = scorer.forSite(id, lemmas);
+        int candidates = 0;
+        for (List<CompressedPostings> postings : invertedIndex.postingSources(id, lemmas)) {
+            ConjunctiveQuery conjunctiveQuery = new ConjunctiveQuery(postings);
+            while (conjunctiveQuery.next()) {
+                if (++candidates % 1024 == 0 && Thread.currentThread().isInterrupted()) {
+                    return collector;
+                }
+                if (invertedIndex.isDeleted(id, conjunctiveQuery.pageId())) {
+                    continue;
+                }
+                if (!matchesPhrases(conjunctiveQuery, lemmas, phrases)) {
+                    continue;
                 }
+                float relevance = siteScorer.score(conjunctiveQuery);
+                collector.collect(conjunctiveQuery.pageId(), relevance * proximityFactor(conjunctiveQuery));
             }
         }
-        return firstPageList;
+        return collector;
     }
 
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("siteSearches", siteSearches.sum());
+        metrics.put("siteTimeouts", siteTimeouts.sum());
+        metrics.put("siteFailures", siteFailures.sum());
+        metrics.put("activeSiteTasks", siteExecutor.getActiveCount());
+        metrics.put("queuedSiteTasks", siteExecutor.getQueue().size());
+        return metrics;
+    }
 
-    public LinkedHashSet<QueryResponseDataItems> creationListOfResponseDataItem(LinkedHashSet<String> sortLemma, HashSet<Integer> pageList, Set<String> allLemma) throws IOException {
 
-        HashMap<QueryResponseDataItems, Float> queryList = new HashMap<>();
-        HashMap<String, String> mapWithTitleAndSnippet = new HashMap<>();
-        for (Integer pageId : pageList) {
-            Page page = pageRepository.findById(pageId).get();
-            SiteTable site = page.getSite();
-            float relevance = 0;
-            for (String stringLemma : sortLemma) {
-                Lemma lemma = lemmaRepository.findByLemmaAndSiteId(stringLemma, site.getId());
-                IndexTable index = indexRepository.findByPageIdAndLemmaId(pageId, lemma.getId());
-                mapWithTitleAndSnippet = createSnippet(pageId, allLemma);
-                relevance = relevance + index.getRank();
+    private static boolean matchesPhrases(ConjunctiveQuery conjunctiveQuery, List<String> lemmas, List<PhraseQuery> phrases) {
+        for (PhraseQuery phrase : phrases) {
+            if (!phrase.matches(lemma -> {
+                int term = lemmas.indexOf(lemma);
+                return term < 0 ? new int[0] : conjunctiveQuery.positions(term);
+            })) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            QueryResponseDataItems query = new QueryResponseDataItems();
-            query.setSite(site.getUrl());
-            query.setSiteName(site.getName());
-            query.setUri(page.getPath().substring(1));
-            query.setTitle(mapWithTitleAndSnippet.get("title"));
-            query.setSnippet(mapWithTitleAndSnippet.get("snippet"));
-            query.setRelevance(relevance);
-            queryList.put(query, relevance);
+    /**
+     * Надбавка за близость лемм запроса.
+     */
+    private float proximityFactor(ConjunctiveQuery conjunctiveQuery) {
+        int window = searchSettings.getProximityWindow();
+        if (conjunctiveQuery.terms() < 2 || window <= 0) {
+            return 1;
+        }
+        List<int[]> positions = new ArrayList<>(conjunctiveQuery.terms());
+        for (int term = 0; term < conjunctiveQuery.terms(); term++) {
+            positions.add(conjunctiveQuery.positions(term));
         }
+        int span = PhraseQuery.minimalSpan(positions);
+        if (span < 0 || span > window) {
+            return 1;
+        }
+        return (float) (1 + searchSettings.getProximityBoost() * (window - span + 1) / window);
+    }
 
-        Map<QueryResponseDataItems, Float> sortedMap = queryList.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey, Map.Entry::getValue, (oldValue, newValue) -> oldValue, LinkedHashMap::new));
+    public LinkedHashSet<QueryResponseDataItems> creationListOfResponseDataItem(TopKCollector.Result topPages, int offset, int limit, Set<String> allLemma) throws IOException {
+        List<String> queryLemmas = new ArrayList<>(allLemma);
 
-        Float firstRelevance = sortedMap.entrySet()
-                .stream()
-                .findFirst()
-                .get().getValue();
         LinkedHashSet<QueryResponseDataItems> resultList = new LinkedHashSet<>();
+        offset = Math.max(offset, 0);
+        if (offset >= topPages.size() || limit <= 0) {
+            return resultList;
+        }
+        float firstRelevance = topPages.score(0);
+        int end = (int) Math.min((long) offset + limit, topPages.size());
+        List<Integer> pageIds = new ArrayList<>(end - offset);
+        for (int i = offset; i < end; i++) {
+            pageIds.add(topPages.pageId(i));
+        }
+        Map<Integer, SearchPageRow> pages = new HashMap<>();
+        for (SearchPageRow row : pageRepository.findSearchPages(pageIds)) {
+            pages.put(row.getPageId(), row);
+        }
+        Map<Integer, PageText> texts = contentStore.loadTexts(pageIds);
+
+        for (int i = offset; i < end; i++) {
+            SearchPageRow page = pages.get(topPages.pageId(i));
+            if (page == null) {
+                continue;
+            }
+            String title = page.getTitle();
+            PageText pageText = texts.get(page.getPageId());
+            if (pageText == null) {
+                Document document = Jsoup.parse(contentStore.load(page.getPageId()));
+                pageText = backfill(page, document);
+                title = title == null ? document.title() : title;
+            }
+            List<int[]> positions = invertedIndex.positions(page.getSiteId(), page.getPageId(), queryLemmas);
+            if (positions.stream().allMatch(lemmaPositions -> lemmaPositions.length == 0)) {
+                PageText analyzed = pageText;
+                positions = queryLemmas.stream().map(analyzed::tokensOf).collect(Collectors.toList());
+            }
 
-        for (QueryResponseDataItems response : sortedMap.keySet()) {
-            response.setRelevance(response.getRelevance() / firstRelevance);
-            resultList.add(response);
+            QueryResponseDataItems query = new QueryResponseDataItems();
+            query.setSite(page.getSiteUrl());
+            query.setSiteName(page.getSiteName());
+            query.setUri(page.getPath().substring(1));
+            query.setTitle(title);
+            query.setSnippet(SnippetBuilder.build(pageText, positions));
+            query.setRelevance(topPages.score(i) / firstRelevance);
+            resultList.add(query);
         }
 
         return resultList;
     }
 
 
-    public HashMap<String, String> createSnippet(Integer pageId, Set<String> allLemma) throws IOException {
-
-        HashMap<String, String> map = new HashMap<>();
-
-        String text = pageRepository.findById(pageId).get().getContent();
-        LuceneMorphology russianMorphology = new RussianLuceneMorphology();
-        String title = text.substring(text.indexOf("<title>") + 7, text.indexOf("</title>"));
-        map.put("title", title);
-
-        String plain = Jsoup.parse(text).text();
-        String[] str = plain.split(" ");
-        int k = 0;
-        String snippet = "";
-        boolean flagSnippet = false;
-
-        for (String word : str) {
-            boolean wordInSnippet = false;
-
-            String newWord = word.replaceAll("[^\\sа-яА-ЯёЁ]", "");
-            newWord = newWord.replaceAll("\\s+", " ").trim();
-
-            if (!newWord.isEmpty()) {
-                List<String> wordBase = russianMorphology.getNormalForms(newWord.toLowerCase());
-                for (String w : wordBase) {
-                    for (String lemma : allLemma) {
-                        if (w.equals(lemma)) {
-                            snippet = snippet + " " + "<b>" + word + "</b>";
-                            wordInSnippet = true;
-                            flagSnippet = true;
-                            break;
-                        }
-                    }
-                }
-
-            }
-            if (!wordInSnippet) snippet = snippet + " " + word;
-            if (k == 30 && !flagSnippet) {
-                snippet = "";
-                k = 0;
-            } else if (k == 30 && flagSnippet) {
-                break;
-            }
-            ;
-            k++;
+    /**
+     * Текст страницы, проиндексированной до page_content.token_offsets.
+     */
+    private PageText backfill(SearchPageRow page, Document document) {
+        PageText pageText = lemmatization.analyze(document.text());
+        contentStore.saveText(page.getPageId(), pageText);
+        if (page.getTitle() == null) {
+            pageRepository.findById(page.getPageId()).ifPresent(stored -> {
+                stored.setTitle(document.title());
+                pageRepository.save(stored);
+            });
         }
-        map.put("snippet", snippet);
-        return map;
+        return pageText;
     }
 }
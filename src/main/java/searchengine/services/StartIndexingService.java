@@ -6,23 +6,34 @@ import org.jsoup.nodes.Document;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.controllers.ApiController;
+import searchengine.dto.index.PageValidators;
+import searchengine.logicClasses.ActiveSites;
+import searchengine.logicClasses.BatchIndexWriter;
+import searchengine.logicClasses.CrawlMonitor;
 import searchengine.logicClasses.DeleteLemma;
 import searchengine.logicClasses.FillingLemmaAndIndex;
-import searchengine.logicClasses.FillingTablePage;
+import searchengine.logicClasses.InvertedIndex;
+import searchengine.logicClasses.LinkFilter;
+import searchengine.logicClasses.PageContentStore;
+import searchengine.logicClasses.PolitenessLimiter;
+import searchengine.logicClasses.SiteCounters;
+import searchengine.logicClasses.SiteCrawler;
+import searchengine.logicClasses.SitePurger;
+import searchengine.logicClasses.UrlNormalizer;
 import searchengine.model.Page;
 import searchengine.model.SiteStatus;
 import searchengine.model.SiteTable;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 @EnableAsync
@@ -33,11 +44,23 @@ public class StartIndexingService {
     private final SitesList sites;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
     private final FillingLemmaAndIndex fillingLemmaAndIndex;
     private final DeleteLemma delete;
+    private final BatchIndexWriter batchIndexWriter;
+    private final SitePurger sitePurger;
+    private final InvertedIndex invertedIndex;
+    private final PageContentStore contentStore;
+    private final ActiveSites activeSites;
+    private final CrawlerSettings crawlerSettings;
+    private final PolitenessLimiter politenessLimiter;
+    private final CrawlMonitor crawlMonitor;
+    private final UrlNormalizer urlNormalizer;
+    private final LinkFilter linkFilter;
+    private final SiteCounters siteCounters;
 
+    /**
+     * Переиндексация в новом поколении сайта.
+     */
     @Async
     public void startIndexing() {
 
@@ -46,12 +69,24 @@ public class StartIndexingService {
         ExecutorService service= Executors.newFixedThreadPool(sites.getSites().size());
         for (Site sites : sites.getSites()) {
             service.execute(() -> {
-                SiteTable siteTable = new SiteTable();
+                Integer activeId = activeSites.siteId(sites.getUrl());
+                SiteTable activeSite = null;
+                for (SiteTable generation : siteRepository.findAllByUrl(sites.getUrl())) {
+                    if (activeId != null && generation.getId() == activeId) {
+                        activeSite = generation;
+                    } else {
+                        sitePurger.purge(generation.getId());
+                    }
+                }
+                SiteTable detectedSite = crawlerSettings.isIncremental() ? activeSite : null;
+                SiteTable siteTable = detectedSite != null ? detectedSite : new SiteTable();
+                boolean available = true;
                 try {
                     Jsoup.connect(sites.getUrl()).
                             userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
                             .referrer("http://www.google.com").get();
                 } catch (IOException e) {
+                    available = false;
                     siteTable.setName(sites.getName());
                     siteTable.setUrl(sites.getUrl());
                     siteTable.setStatus(SiteStatus.FAILED);
@@ -61,12 +96,16 @@ public class StartIndexingService {
                     e.getMessage();
                 }
 
-                if (siteTable.getName() == null) {
+                if (available) {
                     siteTable.setName(sites.getName());
                     siteTable.setUrl(sites.getUrl());
                     siteTable.setStatus(SiteStatus.INDEXING);
                     siteTable.setStatusTime(new Date());
+                    siteTable.setLastError(null);
                     siteRepository.save(siteTable);
+                    if (activeSite == null) {
+                        activeSites.activate(sites.getUrl(), siteTable.getId());
+                    }
 
                     ScheduledExecutorService time = Executors.newSingleThreadScheduledExecutor();
                     time.scheduleAtFixedRate(() -> {
@@ -74,16 +113,34 @@ public class StartIndexingService {
                         siteRepository.save(siteTable);
                     }, 0, 1, TimeUnit.SECONDS);
 
-                    ForkJoinPool pool = new ForkJoinPool();
-                    FillingTablePage page = new FillingTablePage(sites.getUrl(), siteTable, pageRepository, indexRepository, lemmaRepository, fillingLemmaAndIndex);
-                    pool.invoke(page);
+                    Map<String, PageValidators> knownPages = new ConcurrentHashMap<>();
+                    if (detectedSite != null) {
+                        for (PageValidators validators : pageRepository.findValidatorsBySiteId(detectedSite.getId())) {
+                            knownPages.put(validators.getPath(), validators);
+                        }
+                    }
+                    SiteCrawler crawler = new SiteCrawler(siteTable, crawlerSettings, pageRepository, fillingLemmaAndIndex, delete,
+                            politenessLimiter, crawlMonitor, urlNormalizer, linkFilter, knownPages, contentStore, siteCounters);
+                    try {
+                        crawler.crawl();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    batchIndexWriter.drain();
+                    boolean writeFailed = batchIndexWriter.consumeFailure(siteTable.getId());
 
-                    if (ApiController.checkStartFlag.get()) {
+                    if (ApiController.checkStartFlag.get() && !writeFailed) {
                         siteTable.setStatus(SiteStatus.INDEXED);
                         siteRepository.save(siteTable);
+                        Integer replacedId = activeSites.activate(sites.getUrl(), siteTable.getId());
+                        if (replacedId != null && replacedId != siteTable.getId()) {
+                            sitePurger.purge(replacedId);
+                        }
+                        invertedIndex.flush(siteTable.getId());
                     } else {
                         siteTable.setStatus(SiteStatus.FAILED);
-                        siteTable.setLastError("Индексация остановлена пользователем");
+                        siteTable.setLastError(writeFailed ? "Не удалось записать индекс части страниц"
+                                : "Индексация остановлена пользователем");
                         siteRepository.save(siteTable);
                     }
                     time.shutdown();
@@ -93,24 +150,16 @@ public class StartIndexingService {
         }
     }
 
+    public void stopIndexing() {
+        ApiController.checkStartFlag.set(false);
+        batchIndexWriter.drain();
+    }
+
     private void tableClearing() {
-        ExecutorService service= Executors.newFixedThreadPool(sites.getSites().size());
-        for (Site site : sites.getSites()) {
-            SiteTable detectedSite=siteRepository.findByUrl(site.getUrl());
-            if (detectedSite != null) {
-                service.execute(() -> {
-                    List<Page> pageList = pageRepository.findAllBySiteId(detectedSite.getId());
-                    if (!pageList.isEmpty()) {
-                        for (Page page : pageList) {
-                            delete.deleteLemmaAndIndex(page);
-                            pageRepository.delete(page);
-                        }
-                    }
-                    siteRepository.delete(detectedSite);
-                });
-            }
-        }
         List< Page> pageListWithError=pageRepository.findAllByCode(400);
+        for (Page page : pageListWithError) {
+            contentStore.delete(page.getId());
+        }
         pageRepository.deleteAll(pageListWithError);
     }
 }
@@ -6,47 +6,65 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.logicClasses.CrawlMonitor;
+import searchengine.logicClasses.SiteCounters;
 import searchengine.model.SiteTable;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
+    private final CrawlMonitor crawlMonitor;
+    private final SiteCounters siteCounters;
 
     @Override
     public StatisticsResponse getStatistics() {
 
+        Map<String, SiteTable> latestGenerations = new LinkedHashMap<>();
+        for (SiteTable site : siteRepository.findAll()) {
+            SiteTable latest = latestGenerations.get(site.getUrl());
+            if (latest == null || site.getId() > latest.getId()) {
+                latestGenerations.put(site.getUrl(), site);
+            }
+        }
+
         TotalStatistics total = new TotalStatistics();
-        total.setSites((int) siteRepository.count());
+        total.setSites(latestGenerations.size());
         total.setIndexing(true);
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<SiteTable> siteTableList = siteRepository.findAll();
+        Collection<SiteTable> siteTableList = latestGenerations.values();
+        long totalPages = 0;
+        long totalLemmas = 0;
 
         for (SiteTable site : siteTableList) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = pageRepository.findAllBySiteId(site.getId()).size();
-            int lemmas = lemmaRepository.findBySiteId(site.getId()).size();
-            item.setPages(pages);
-            item.setLemmas(lemmas);
+            long pages = siteCounters.pages(site.getId());
+            long lemmas = siteCounters.lemmas(site.getId());
+            item.setPages((int) pages);
+            item.setLemmas((int) lemmas);
+            item.setErrors(siteCounters.errors(site.getId()));
+            item.setBytesFetched(siteCounters.bytesFetched(site.getId()));
+            item.setPagesPerSecond(crawlMonitor.pagesPerSecond(site.getId()));
             item.setStatus(String.valueOf(site.getStatus()));
             item.setError(site.getLastError());
             item.setStatusTime(site.getStatusTime().getTime());
-            total.setPages((int) pageRepository.count());
-            total.setLemmas((int) lemmaRepository.count());
+            totalPages += pages;
+            totalLemmas += lemmas;
             detailed.add(item);
         }
+        total.setPages((int) totalPages);
+        total.setLemmas((int) totalLemmas);
 
         StatisticsResponse response = new StatisticsResponse();
         StatisticsData data = new StatisticsData();
@@ -0,0 +1,141 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пересечение со скачками по сжатым спискам совпадает с пересечением множеств через retainAll.
+ */
+class ConjunctiveQueryTest {
+    private static final Logger log = LoggerFactory.getLogger(ConjunctiveQueryTest.class);
+    private static final int MAX_PAGE_ID = 200_000;
+
+    @Test
+    void matchesRetainAllOnRandomLists() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int terms = 1 + random.nextInt(4);
+            List<int[]> lists = new ArrayList<>();
+            for (int term = 0; term < terms; term++) {
+                double density = Math.pow(10, -4 * random.nextDouble());
+                lists.add(randomList(random, 1 + (int) (density * random.nextInt(MAX_PAGE_ID))));
+            }
+            assertEquals(retainAll(lists), intersect(lists), "раунд " + round);
+        }
+    }
+
+    @Test
+    void ranksBelongToTheirTerms() {
+        int[] frequent = new int[1_000];
+        for (int i = 0; i < frequent.length; i++) {
+            frequent[i] = i * 3;
+        }
+        int[] rare = {3, 300, 1_500, 2_997};
+        ConjunctiveQuery query = new ConjunctiveQuery(List.of(postings(frequent, 1), postings(rare, 2)));
+        for (int pageId : rare) {
+            assertTrue(query.next());
+            assertEquals(pageId, query.pageId());
+            assertEquals(1, query.rank(0));
+            assertEquals(2, query.rank(1));
+        }
+        assertFalse(query.next());
+    }
+
+    @Test
+    void emptyListStopsTheQuery() {
+        ConjunctiveQuery query = new ConjunctiveQuery(List.of(postings(new int[]{1, 2, 3}, 1), postings(new int[0], 1)));
+        assertFalse(query.next());
+    }
+
+    /**
+     * Время пересечения по сравнению с HashSet.retainAll. Запускается профилем benchmark: mvn test -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void throughputAgainstRetainAll() {
+        Random random = new Random(11);
+        List<int[]> lists = List.of(randomList(random, 500), randomList(random, 20_000), randomList(random, 100_000));
+        List<CompressedPostings> postings = new ArrayList<>();
+        for (int[] list : lists) {
+            postings.add(postings(list, 1));
+        }
+        long checksum = 0;
+        for (int i = 0; i < 200; i++) {
+            checksum += countGalloping(postings) + retainAll(lists).size();
+        }
+        int iterations = 1_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += countGalloping(postings);
+        }
+        long galloping = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += retainAll(lists).size();
+        }
+        long retainAll = (System.nanoTime() - start) / iterations;
+        log.info("пересечение 500 x 20000 x 100000: ConjunctiveQuery {} ns, retainAll {} ns (checksum {})",
+                galloping, retainAll, checksum);
+    }
+
+    private static int countGalloping(List<CompressedPostings> postings) {
+        ConjunctiveQuery query = new ConjunctiveQuery(postings);
+        int count = 0;
+        while (query.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<Integer> intersect(List<int[]> lists) {
+        List<CompressedPostings> postings = new ArrayList<>();
+        for (int[] list : lists) {
+            postings.add(postings(list, 1));
+        }
+        ConjunctiveQuery query = new ConjunctiveQuery(postings);
+        List<Integer> result = new ArrayList<>();
+        while (query.next()) {
+            result.add(query.pageId());
+        }
+        return result;
+    }
+
+    private static List<Integer> retainAll(List<int[]> lists) {
+        Set<Integer> result = new HashSet<>();
+        for (int pageId : lists.get(0)) {
+            result.add(pageId);
+        }
+        for (int i = 1; i < lists.size(); i++) {
+            Set<Integer> other = new HashSet<>();
+            for (int pageId : lists.get(i)) {
+                other.add(pageId);
+            }
+            result.retainAll(other);
+        }
+        return new ArrayList<>(new TreeSet<>(result));
+    }
+
+    private static int[] randomList(Random random, int size) {
+        return random.ints(size, 1, MAX_PAGE_ID).sorted().distinct().toArray();
+    }
+
+    private static CompressedPostings postings(int[] pageIds, float rank) {
+        float[] ranks = new float[pageIds.length];
+        Arrays.fill(ranks, rank);
+        return CompressedPostings.encode(pageIds, ranks, new byte[pageIds.length][], pageIds.length);
+    }
+}
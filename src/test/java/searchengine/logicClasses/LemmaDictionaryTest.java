@@ -0,0 +1,111 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.config.IndexWriterSettings;
+import searchengine.model.SiteStatus;
+import searchengine.model.SiteTable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Повторный обход неизменившегося сайта не вставляет леммы и не меняет их число.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.datasource.url=jdbc:h2:mem:lemmas;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class LemmaDictionaryTest {
+    private static final List<List<String>> PAGES = List.of(
+            List.of("лиса", "бежать", "лес"),
+            List.of("лиса", "нора"),
+            List.of("ёж", "еж", "лес"));
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final IndexWriterSettings settings = new IndexWriterSettings();
+    private CountingJdbcTemplate jdbc;
+    private SiteCounters siteCounters;
+    private int siteId;
+
+    @BeforeEach
+    void setUp() {
+        SiteTable site = new SiteTable();
+        site.setName("Тест");
+        site.setUrl("https://example.org/");
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(new Date());
+        entityManager.persist(site);
+        entityManager.flush();
+        siteId = site.getId();
+        jdbc = new CountingJdbcTemplate(jdbcTemplate);
+        siteCounters = new SiteCounters(jdbc, settings);
+    }
+
+    @Test
+    void recrawlOfUnchangedSiteKeepsLemmaCount() {
+        crawl(new LemmaDictionary(jdbc, settings, siteCounters));
+        assertEquals(6, siteCounters.lemmas(siteId));
+        assertEquals(6, lemmaRows());
+
+        jdbc.inserts = 0;
+        LemmaDictionary sameProcess = new LemmaDictionary(jdbc, settings, siteCounters);
+        crawl(sameProcess);
+        crawl(sameProcess);
+        crawl(new LemmaDictionary(jdbc, settings, siteCounters));
+        assertEquals(0, jdbc.inserts);
+        assertEquals(6, siteCounters.lemmas(siteId));
+        assertEquals(6, lemmaRows());
+    }
+
+    @Test
+    void newLemmasOfChangedPageAreCountedOnce() {
+        crawl(new LemmaDictionary(jdbc, settings, siteCounters));
+        LemmaDictionary restarted = new LemmaDictionary(jdbc, settings, siteCounters);
+        Map<String, Integer> ids = restarted.resolveIds(siteId, List.of("лиса", "заяц", "лес"));
+        assertEquals(3, ids.size());
+        assertEquals(7, siteCounters.lemmas(siteId));
+        assertEquals(7, lemmaRows());
+    }
+
+    private void crawl(LemmaDictionary dictionary) {
+        for (List<String> page : PAGES) {
+            assertEquals(page.size(), dictionary.resolveIds(siteId, page).size());
+        }
+    }
+
+    private long lemmaRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lemma WHERE site_id = ?", Long.class, siteId);
+    }
+
+    private static final class CountingJdbcTemplate extends JdbcTemplate {
+        private int inserts;
+
+        private CountingJdbcTemplate(JdbcTemplate target) {
+            super(target.getDataSource());
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("INSERT")) {
+                inserts++;
+            }
+            return super.update(sql, args);
+        }
+    }
+}
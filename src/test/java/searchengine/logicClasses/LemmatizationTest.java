@@ -0,0 +1,142 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.config.MorphologySettings;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Однопроходная лемматизация считает леммы так же, как прежний разбор через replaceAll и split.
+ */
+class LemmatizationTest {
+    private static final Logger log = LoggerFactory.getLogger(LemmatizationTest.class);
+    private static final String[] WORDS = ("поисковый движок обходит сайты и индексирует страницы, леммы слов " +
+            "хранятся в базе данных а запросы пользователей ищут страницы по леммам с учётом частоты " +
+            "Москва Россия быстро медленно красивые дома стоят на берегу реки где живут люди которые любят читать " +
+            "книги журналы газеты новости статьи о науке технике и искусстве").replace("ё", "е").split("[ ,]+");
+    private static final String[] SEPARATORS = {" ", " ", " ", ", ", ". ", " - ", "\n", " (2024) ", " — ", "! "};
+
+    private static Lemmatization lemmatization;
+    private static MorphologyAnalyzer morphologyAnalyzer;
+
+    @BeforeAll
+    static void loadMorphology() throws IOException {
+        morphologyAnalyzer = new MorphologyAnalyzer(new MorphologySettings());
+        lemmatization = new Lemmatization(morphologyAnalyzer);
+    }
+
+    @Test
+    void countsLemmasLikeTheRegexPipeline() {
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            String text = corpusText(random, 2_000);
+            assertEquals(regexLemmas(text), toMap(lemmatization.lemmatization(text)));
+        }
+    }
+
+    @Test
+    void foldsYoAndSplitsOnHyphens() {
+        Map<String, Integer> lemmas = toMap(lemmatization.lemmatization("Ёлка ёлки, дом-музей"));
+        assertEquals(2, lemmas.get("елка"));
+        assertTrue(lemmas.containsKey("дом"));
+        assertTrue(lemmas.containsKey("музей"));
+    }
+
+    @Test
+    void analyzeKeepsTokenPositions() {
+        PageText pageText = lemmatization.analyze("Дома стоят, дома горят.");
+        assertEquals(4, pageText.tokenCount());
+        assertEquals(17, pageText.tokenStart(3));
+        assertEquals(22, pageText.tokenEnd(3));
+        assertEquals(2, lemmatization.lemmatization("Дома стоят, дома горят.").get("дом"));
+    }
+
+    /**
+     * Скорость и выделение памяти против прежнего разбора, профиль benchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void throughputAgainstRegexPipeline() {
+        Random random = new Random(5);
+        List<String> corpus = new ArrayList<>();
+        long chars = 0;
+        for (int i = 0; i < 200; i++) {
+            String text = corpusText(random, 5_000);
+            corpus.add(text);
+            chars += text.length();
+        }
+        measure(corpus, text -> regexLemmas(text).size());
+        measure(corpus, text -> lemmatization.lemmatization(text).size());
+        long[] regex = measure(corpus, text -> regexLemmas(text).size());
+        long[] singlePass = measure(corpus, text -> lemmatization.lemmatization(text).size());
+        log.info("корпус {} текстов, {} символов: replaceAll+split {} МБ/с, {} байт на текст; " +
+                        "Tokenizer {} МБ/с, {} байт на текст", corpus.size(), chars,
+                Math.round(chars * 2 * 1000.0 / regex[0]), regex[1] / corpus.size(),
+                Math.round(chars * 2 * 1000.0 / singlePass[0]), singlePass[1] / corpus.size());
+    }
+
+    /**
+     * Наносекунды и выделенные текущим потоком байты на один проход по корпусу.
+     */
+    private static long[] measure(List<String> corpus, Function<String, Integer> lemmatizer) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (String text : corpus) {
+            checksum += lemmatizer.apply(text);
+        }
+        long nanos = System.nanoTime() - start;
+        assertTrue(checksum > 0);
+        return new long[]{nanos, threads.getThreadAllocatedBytes(thread) - allocated};
+    }
+
+    private static String corpusText(Random random, int words) {
+        StringBuilder text = new StringBuilder(words * 10);
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(random.nextInt(8) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Прежняя реализация Lemmatization.lemmatization.
+     */
+    private static Map<String, Integer> regexLemmas(String text) {
+        Map<String, Integer> map = new HashMap<>();
+        String newText = text.replaceAll("[^\\sа-яА-Я]", "");
+        newText = newText.replaceAll("\\s+", " ").trim();
+        for (String s : newText.split(" ")) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            for (String lemma : morphologyAnalyzer.normalForms(s.toLowerCase())) {
+                map.merge(lemma, 1, Integer::sum);
+            }
+        }
+        return map;
+    }
+
+    private static Map<String, Integer> toMap(StringIntMap lemmas) {
+        Map<String, Integer> map = new HashMap<>();
+        lemmas.forEach(map::put);
+        return map;
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.config.SearchSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NDCG@10 у BM25 и суммы rank на синтетическом корпусе.
+ */
+class ScorerEvaluationTest {
+    private static final Logger log = LoggerFactory.getLogger(ScorerEvaluationTest.class);
+    private static final int SITE_ID = 1;
+    private static final int PAGES = 20_000;
+    private static final int QUERIES = 20;
+    private static final int TOP = 10;
+    private static final int THROUGHPUT_ROUNDS = 50;
+    private static final double[] GRADE_DENSITY = {0.001, 0.01, 0.04};
+
+    private static int[] pageLengths;
+    private static List<Query> queries;
+    private static IndexStatistics statistics;
+    private static PageLengths lengths;
+
+    @BeforeAll
+    static void buildCorpus() {
+        Random random = new Random(42);
+        statistics = new IndexStatistics();
+        lengths = new PageLengths(null);
+        pageLengths = new int[PAGES + 1];
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            pageLengths[pageId] = (int) Math.exp(Math.log(100) + random.nextDouble() * Math.log(200));
+            lengths.set(SITE_ID, pageId, pageLengths[pageId]);
+        }
+        statistics.addPages(SITE_ID, PAGES);
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(new Query(i, random));
+        }
+    }
+
+    @Test
+    void bm25RanksBetterThanRankSum() {
+        double bm25Ndcg = averageNdcg(new Bm25Scorer(statistics, lengths, new SearchSettings()));
+        double rankSumNdcg = averageNdcg(new RankSumScorer());
+        log.info("NDCG@{}: rank-sum {}, bm25 {}", TOP, rankSumNdcg, bm25Ndcg);
+
+        assertTrue(bm25Ndcg > rankSumNdcg, "BM25 " + bm25Ndcg + " не лучше rank-sum " + rankSumNdcg);
+        assertTrue(bm25Ndcg > 0.95, "NDCG@" + TOP + " BM25 " + bm25Ndcg);
+    }
+
+    /**
+     * Пропускная способность обоих способов оценки. Запускается профилем benchmark: mvn test -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void throughput() {
+        log.info("запросов/с: rank-sum {}, bm25 {}", Math.round(queriesPerSecond(new RankSumScorer())),
+                Math.round(queriesPerSecond(new Bm25Scorer(statistics, lengths, new SearchSettings()))));
+    }
+
+    private static double averageNdcg(Scorer scorer) {
+        double total = 0;
+        for (Query query : queries) {
+            TopKCollector.Result top = query.search(scorer);
+            double dcg = 0;
+            for (int i = 0; i < top.size(); i++) {
+                dcg += gain(query.grades[top.pageId(i)]) / log2(i + 2);
+            }
+            int[] ideal = Arrays.stream(query.grades).filter(grade -> grade > 0).sorted().toArray();
+            double idealDcg = 0;
+            for (int i = 0; i < Math.min(TOP, ideal.length); i++) {
+                idealDcg += gain(ideal[ideal.length - 1 - i]) / log2(i + 2);
+            }
+            total += idealDcg == 0 ? 0 : dcg / idealDcg;
+        }
+        return total / queries.size();
+    }
+
+    private static double queriesPerSecond(Scorer scorer) {
+        for (Query query : queries) {
+            query.search(scorer);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < THROUGHPUT_ROUNDS; round++) {
+            for (Query query : queries) {
+                query.search(scorer);
+            }
+        }
+        return THROUGHPUT_ROUNDS * queries.size() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double gain(int grade) {
+        return grade <= 0 ? 0 : (1 << grade) - 1;
+    }
+
+    private static double log2(int value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    /**
+     * Запрос из двух лемм и оценки релевантности страниц.
+     */
+    private static final class Query {
+        private final List<String> lemmas;
+        private final List<CompressedPostings> postings = new ArrayList<>();
+        private final int[] grades = new int[PAGES + 1];
+
+        private Query(int number, Random random) {
+            lemmas = List.of("q" + number + "a", "q" + number + "b");
+            int[][] pageIds = new int[2][PAGES];
+            float[][] ranks = new float[2][PAGES];
+            int size = 0;
+            for (int pageId = 1; pageId <= PAGES; pageId++) {
+                double p = random.nextDouble();
+                int grade = p < 0.002 ? 2 : p < 0.012 ? 1 : p < 0.20 ? 0 : -1;
+                if (grade < 0) {
+                    continue;
+                }
+                grades[pageId] = grade;
+                for (int term = 0; term < 2; term++) {
+                    double mean = GRADE_DENSITY[grade] * pageLengths[pageId];
+                    pageIds[term][size] = pageId;
+                    ranks[term][size] = 1 + (int) (mean * (0.5 + random.nextDouble()));
+                }
+                size++;
+            }
+            for (int term = 0; term < 2; term++) {
+                postings.add(CompressedPostings.encode(pageIds[term], ranks[term], new byte[size][], size));
+                statistics.addFrequency(SITE_ID, lemmas.get(term), size);
+            }
+        }
+
+        private TopKCollector.Result search(Scorer scorer) {
+            Scorer.SiteScorer siteScorer = scorer.forSite(SITE_ID, lemmas);
+            TopKCollector collector = new TopKCollector(TOP);
+            ConjunctiveQuery match = new ConjunctiveQuery(postings);
+            while (match.next()) {
+                collector.collect(match.pageId(), siteScorer.score(match));
+            }
+            return collector.drain();
+        }
+    }
+}
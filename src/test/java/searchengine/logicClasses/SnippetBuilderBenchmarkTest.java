@@ -0,0 +1,68 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Время сниппета по сохранённому тексту, профиль benchmark.
+ */
+@Tag("benchmark")
+class SnippetBuilderBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(SnippetBuilderBenchmarkTest.class);
+    private static final int HITS_PER_LEMMA = 20;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    void snippetCostDoesNotGrowWithPageLength() {
+        int[] tokenCounts = {1_000, 10_000, 100_000, 1_000_000};
+        double[] nanos = new double[tokenCounts.length];
+        for (int i = 0; i < tokenCounts.length; i++) {
+            PageText page = SnippetBuilderTest.page(tokenCounts[i]);
+            nanos[i] = measure(page, positions(tokenCounts[i]));
+            log.info("SnippetBuilder.build: {} tokens - {} ns/op", tokenCounts[i], Math.round(nanos[i]));
+        }
+        double ratio = nanos[nanos.length - 1] / nanos[0];
+        assertTrue(ratio < 10, "сниппет на странице в 1000 раз длиннее дороже в " + ratio + " раз");
+    }
+
+    private static double measure(PageText page, List<int[]> positions) {
+        byte[] offsets = page.encodeTokenOffsets();
+        byte[] text = SnippetBuilderTest.compress(page.text());
+        int length = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            length += SnippetBuilder.build(PageText.stored(offsets, SnippetBuilderTest.reader(text)), positions).length();
+        }
+        long elapsed = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            PageText stored = PageText.stored(offsets, SnippetBuilderTest.reader(text));
+            long start = System.nanoTime();
+            length += SnippetBuilder.build(stored, positions).length();
+            elapsed += System.nanoTime() - start;
+        }
+        assertTrue(length > 0);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    /**
+     * Две леммы запроса, по HITS_PER_LEMMA вхождений каждой, разбросанные по всей странице.
+     */
+    private static List<int[]> positions(int tokens) {
+        List<int[]> positions = new ArrayList<>();
+        for (int lemma = 0; lemma < 2; lemma++) {
+            int[] lemmaPositions = new int[HITS_PER_LEMMA];
+            for (int hit = 0; hit < HITS_PER_LEMMA; hit++) {
+                lemmaPositions[hit] = (int) ((long) tokens * hit / HITS_PER_LEMMA) + lemma * 3;
+            }
+            positions.add(lemmaPositions);
+        }
+        return positions;
+    }
+}
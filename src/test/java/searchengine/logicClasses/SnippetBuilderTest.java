@@ -0,0 +1,88 @@
+package searchengine.logicClasses;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сниппет по сохранённому тексту совпадает со сниппетом по тексту в памяти и читает текст только до конца окна.
+ */
+class SnippetBuilderTest {
+    private static final String[] WORDS = {"поиск", "индекс", "страница", "лемма", "запрос", "сайт", "текст", "слово"};
+
+    @Test
+    void storedTextIsReadOnlyUpToTheWindow() {
+        PageText page = page(1_000_000);
+        CountingReader reader = new CountingReader(page.text());
+        List<int[]> positions = List.of(new int[]{1_000, 500_000}, new int[]{1_003, 900_000});
+
+        String snippet = SnippetBuilder.build(PageText.stored(page.encodeTokenOffsets(), reader), positions);
+
+        assertEquals(SnippetBuilder.build(page, positions), snippet);
+        assertTrue(snippet.contains("<b>"));
+        assertTrue(reader.read < 20_000, "прочитано " + reader.read + " символов из " + page.text().length());
+    }
+
+    @Test
+    void snippetAtTheEndOfStoredTextMatches() {
+        PageText page = page(5_000);
+        List<int[]> positions = List.of(new int[]{4_998}, new int[]{4_999});
+        PageText stored = PageText.stored(page.encodeTokenOffsets(), new CountingReader(page.text()));
+
+        assertEquals(SnippetBuilder.build(page, positions), SnippetBuilder.build(stored, positions));
+        assertEquals(page.text(), stored.text());
+    }
+
+    static PageText page(int tokens) {
+        StringBuilder text = new StringBuilder(tokens * 8);
+        int[] starts = new int[tokens];
+        for (int token = 0; token < tokens; token++) {
+            starts[token] = text.length();
+            text.append(WORDS[token % WORDS.length]).append(token % 17 == 16 ? ". " : " ");
+        }
+        return new PageText(text.toString(), starts, Collections.emptyMap());
+    }
+
+    static byte[] compress(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Reader reader(byte[] compressed) {
+        return new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8);
+    }
+
+    private static final class CountingReader extends FilterReader {
+        private long read;
+
+        private CountingReader(String text) {
+            super(reader(compress(text)));
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            read += Math.max(count, 0);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.statistics.QueryResponseDataItems;
+import searchengine.logicClasses.InvertedIndex;
+import searchengine.logicClasses.PageContentStore;
+import searchengine.logicClasses.PageText;
+import searchengine.logicClasses.TopKCollector;
+import searchengine.model.Page;
+import searchengine.model.SiteStatus;
+import searchengine.model.SiteTable;
+import searchengine.repository.PageContentRepository;
+import searchengine.repository.PageRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Число SQL-запросов на страницу выдачи не зависит от числа результатов.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.datasource.url=jdbc:h2:mem:search;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=searchengine.services.SqlStatementCounter"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SearchServiceQueryCountTest {
+    private static final String TEXT = "лиса бежит по лесу";
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private PageContentRepository pageContentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SearchService searchService;
+    private final List<Integer> pageIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        SiteTable site = new SiteTable();
+        site.setName("Тест");
+        site.setUrl("https://example.org/");
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(new Date());
+        entityManager.persist(site);
+
+        PageContentStore contentStore = new PageContentStore(pageContentRepository, jdbcTemplate);
+        PageText pageText = new PageText(TEXT, new int[]{0, 5, 11, 14}, Map.of("лиса", new int[]{0}));
+        for (int i = 0; i < 50; i++) {
+            Page page = new Page();
+            page.setSite(site);
+            page.setPath("/page" + i);
+            page.setCode(200);
+            page.setTitle("Страница " + i);
+            entityManager.persist(page);
+            contentStore.save(page.getId(), "<html><body>" + TEXT + "</body></html>");
+            contentStore.saveText(page.getId(), pageText);
+            pageIds.add(page.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        searchService = new SearchService(pageRepository, null, contentStore, mock(InvertedIndex.class),
+                null, null, null, null, null);
+    }
+
+    @Test
+    void resultPageCostsTwoQueriesRegardlessOfHits() throws IOException {
+        assertEquals(2, statementsFor(5, 0, 5));
+        assertEquals(2, statementsFor(50, 0, 50));
+        assertEquals(2, statementsFor(50, 40, 10));
+    }
+
+    @Test
+    void pagingPastTheEndReturnsNothingWithoutQueries() throws IOException {
+        assertEquals(0, statementsFor(10, 10, 10));
+        assertEquals(0, statementsFor(10, 25, 10));
+    }
+
+    private int statementsFor(int hits, int offset, int limit) throws IOException {
+        TopKCollector collector = new TopKCollector(hits);
+        for (int i = 0; i < hits; i++) {
+            collector.collect(pageIds.get(i), hits - i);
+        }
+        SqlStatementCounter.reset();
+        Set<QueryResponseDataItems> items = searchService.creationListOfResponseDataItem(collector.drain(), offset, limit, Set.of("лиса"));
+        assertEquals(Math.max(0, Math.min(limit, hits - offset)), items.size());
+        return SqlStatementCounter.count();
+    }
+}
@@ -0,0 +1,27 @@
+package searchengine.services;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Считает SQL-запросы Hibernate.
+ */
+public class SqlStatementCounter implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+    private static final AtomicInteger STATEMENTS = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.incrementAndGet();
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.set(0);
+    }
+
+    public static int count() {
+        return STATEMENTS.get();
+    }
+}